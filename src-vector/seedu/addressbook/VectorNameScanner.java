@@ -0,0 +1,65 @@
+package seedu.addressbook;
+
+import java.util.function.IntUnaryOperator;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Finds the places in the packed names of the address book where a text may start, with the (incubating)
+ * Vector API: as many bytes as fit in a vector register are compared at once with the first byte of the text,
+ * and the bytes as far ahead as the text is long with its last byte.
+ *
+ * This class is kept in its own source folder, src-vector, so that the address book in src compiles without the
+ * jdk.incubator.vector module. It is compiled, after the address book, and used by the find command, only if
+ * the module is available:
+ *    javac --add-modules jdk.incubator.vector -cp bin -d bin src-vector/seedu/addressbook/VectorNameScanner.java
+ *    java --add-modules jdk.incubator.vector -cp bin seedu.addressbook.AddressBook
+ * Otherwise the address book compares 8 bytes at a time within a long instead.
+ */
+final class VectorNameScanner implements IntUnaryOperator {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private final byte[] names;
+    private final int length;
+    private final byte firstByte;
+    private final byte lastByte;
+    private final int lastIndexInText;
+
+    /**
+     * @param names the packed names, UTF-8 encoded
+     * @param length number of bytes of packed names at the start of the array
+     * @param text to search for, UTF-8 encoded; not empty
+     */
+    VectorNameScanner(byte[] names, int length, byte[] text) {
+        this.names = names;
+        this.length = length;
+        this.firstByte = text[0];
+        this.lastIndexInText = text.length - 1;
+        this.lastByte = text[lastIndexInText];
+    }
+
+    /**
+     * Returns the first index, from the given one on, where the packed names hold the first byte of the text
+     * and (as far ahead as the text is long) its last byte, or the length of the packed names if there is none.
+     */
+    @Override
+    public int applyAsInt(int from) {
+        int start = from;
+        for (; start + lastIndexInText + SPECIES.length() <= length; start += SPECIES.length()) {
+            final VectorMask<Byte> candidates = ByteVector.fromArray(SPECIES, names, start).eq(firstByte)
+                    .and(ByteVector.fromArray(SPECIES, names, start + lastIndexInText).eq(lastByte));
+            if (candidates.anyTrue()) {
+                return start + candidates.firstTrue();
+            }
+        }
+        for (; start + lastIndexInText < length; start++) {
+            if (names[start] == firstByte && names[start + lastIndexInText] == lastByte) {
+                return start;
+            }
+        }
+        return length;
+    }
+}
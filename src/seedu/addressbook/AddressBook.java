@@ -7,21 +7,73 @@ package seedu.addressbook;
  * ====================================================================
  */
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Constructor;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Optional;
+import java.util.PriorityQueue;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntUnaryOperator;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Checksum;
 
 /*
  * NOTE : =============================================================
@@ -71,30 +123,120 @@ public class AddressBook {
     private static final String MESSAGE_COMMAND_HELP_PARAMETERS = "\tParameters: %1$s";
     private static final String MESSAGE_COMMAND_HELP_EXAMPLE = "\tExample: %1$s";
     private static final String MESSAGE_DELETE_PERSON_SUCCESS = "Deleted Person: %1$s";
+    private static final String MESSAGE_DELETE_PERSONS_SUCCESS = "Deleted %1$d persons";
+    private static final String MESSAGE_DELETE_PERSONS_NOT_FOUND = "%1$d persons could not be found in address book";
     private static final String MESSAGE_DISPLAY_PERSON_DATA = "%1$s  Phone Number: %2$s  Email: %3$s";
     private static final String MESSAGE_DISPLAY_LIST_ELEMENT_INDEX = "%1$d. ";
     private static final String MESSAGE_GOODBYE = "Exiting Address Book... Good bye!";
+    private static final String MESSAGE_EXPORTED = "Exported %1$d persons to %2$s (%3$s)";
+    private static final String MESSAGE_EXPORT_TO_STORAGE_FILE = "Cannot export to the storage file: %1$s";
+    private static final String MESSAGE_IMPORTED = "Imported %1$d persons from %2$s (%3$d lines rejected)" + LS
+                                                + "Parsed %4$d lines in %5$d ms (%6$d rows per second)";
+    private static final String MESSAGE_IMPORT_LINE_REJECTED = "Line %1$d rejected (%2$s): %3$s";
+    private static final String MESSAGE_IMPORT_MORE_LINES_REJECTED = "...and %1$d more lines rejected";
     private static final String MESSAGE_INVALID_COMMAND_FORMAT = "Invalid command format: %1$s " + LS + "%2$s";
     private static final String MESSAGE_INVALID_FILE = "The given file name [%1$s] is not a valid file name!";
     private static final String MESSAGE_INVALID_PROGRAM_ARGS = "Too many parameters! Correct program argument format:"
                                                             + LS + "\tjava AddressBook"
                                                             + LS + "\tjava AddressBook [custom storage file path]";
     private static final String MESSAGE_INVALID_PERSON_DISPLAYED_INDEX = "The person index provided is invalid";
+    private static final String MESSAGE_INVALID_PAGE_NUMBER = "The page number provided is invalid";
+    private static final String MESSAGE_NO_NEXT_PAGE = "There are no more pages to show";
+    private static final String MESSAGE_NO_PREVIOUS_PAGE = "There are no earlier pages to show";
+    private static final String MESSAGE_NO_PAGED_LISTING = "There is no paged listing to move through. "
+                                                        + "Use '%1$s' to start one.";
+    private static final String MESSAGE_PAGE_OVERVIEW = "Page %1$d of %2$d (persons %3$d to %4$d of %5$d shown)";
     private static final String MESSAGE_INVALID_STORAGE_FILE_CONTENT = "Storage file has invalid content";
     private static final String MESSAGE_PERSON_NOT_IN_ADDRESSBOOK = "Person could not be found in address book";
+    private static final String MESSAGE_NOT_A_PAGED_STORE = "Storage file is not a paged store: %1$s";
+    private static final String MESSAGE_ERROR_PAGED_STORE = "Unexpected error: unable to use paged store: %1$s (%2$s)";
+    private static final String MESSAGE_PAGED_STORE_IN_USE = "Paged store is in use by another process: %1$s";
+    private static final String MESSAGE_NOT_SUPPORTED_BY_PAGED_STORE = "'%1$s' is not supported by the paged store";
+    private static final String MESSAGE_PAGED_STORE_STATISTICS = "Paged store: %1$d persons in %2$d pages of "
+                                                            + "%3$d bytes, tree height %4$d" + LS
+                                                            + "Page cache: %5$d of %6$d pages used, %7$d hits, "
+                                                            + "%8$d misses (%9$d%% hits), %10$d pages read by scans";
     private static final String MESSAGE_ERROR_CREATING_STORAGE_FILE = "Error: unable to create file: %1$s";
     private static final String MESSAGE_ERROR_MISSING_STORAGE_FILE = "Storage file missing: %1$s";
     private static final String MESSAGE_ERROR_READING_FROM_FILE = "Unexpected error: unable to read from file: %1$s";
     private static final String MESSAGE_ERROR_WRITING_TO_FILE = "Unexpected error: unable to write to file: %1$s";
     private static final String MESSAGE_PERSONS_FOUND_OVERVIEW = "%1$d persons found!";
+    private static final String MESSAGE_TOP_PERSONS_FOUND_OVERVIEW = "%1$d persons found! Best %2$d shown.";
+    private static final String MESSAGE_RELOADED_EXTERNAL_CHANGES = "Storage file was changed by another process: "
+                                                            + "%1$d persons reloaded";
+    private static final String MESSAGE_STORAGE_STATISTICS = "Storage writes: %1$d" + LS
+                                                            + "Writes that waited for another process: %2$d" + LS
+                                                            + "Writes that reloaded external changes: %3$d" + LS
+                                                            + "External changes applied by watch mode: %4$d" + LS
+                                                            + "Find results reused from cache: %5$d of %6$d "
+                                                            + "(%7$d%%)";
+    private static final String MESSAGE_VECTOR_NAME_SCANS = "Text searches in names use the Vector API";
+    private static final String MESSAGE_PRIMARY_STATISTICS = "Replication primary on port %1$d: %2$d records shipped, "
+                                                            + "%3$d replicas connected";
+    private static final String MESSAGE_REPLICA_STATISTICS = "Replica of %1$s (%2$s): applied record %3$d of %4$d, "
+                                                            + "%5$d ms after its commit on the primary "
+                                                            + "(at most %6$d ms)";
+    private static final String MESSAGE_REPLICA_CONNECTED = "connected";
+    private static final String MESSAGE_REPLICA_DISCONNECTED = "not connected";
+    private static final String MESSAGE_READ_ONLY_REPLICA = "This address book is a read-only replica of %1$s. "
+                                                            + "Make changes on the primary instead.";
+    private static final String MESSAGE_REPLICATION_PRIMARY_STARTED = "Shipping changes to replicas on port %1$d";
+    private static final String MESSAGE_REPLICATION_REPLICA_STARTED = "Following the primary at %1$s (read-only)";
+    private static final String MESSAGE_ERROR_REPLICATION = "Error: unable to start replication with %1$s=%2$s";
+    private static final String MESSAGE_RECOVERED_INTERRUPTED_SAVE = "Recovered storage file from interrupted save: "
+                                                            + "%1$s";
+    private static final String MESSAGE_DISCARDED_INTERRUPTED_SAVE = "Discarded incomplete save left behind: %1$s";
+    private static final String MESSAGE_TRANSACTION_ALREADY_STARTED = "A transaction is already in progress";
+    private static final String MESSAGE_TRANSACTION_COMMITTED = "Transaction committed: %1$d changes saved";
+    private static final String MESSAGE_TRANSACTION_CONFLICT = "Storage file was changed by another process during "
+                                                            + "the transaction; transaction rolled back";
+    private static final String MESSAGE_TRANSACTION_DISCARDED = "Transaction in progress discarded: "
+                                                            + "%1$d changes not saved";
+    private static final String MESSAGE_TRANSACTION_NOT_STARTED = "There is no transaction in progress";
+    private static final String MESSAGE_TRANSACTION_ROLLED_BACK = "Transaction rolled back: %1$d changes undone";
+    private static final String MESSAGE_TRANSACTION_STARTED = "Transaction started: changes will be saved on '%1$s'";
+    private static final String MESSAGE_NOTHING_TO_REDO = "There is no undone change to redo";
+    private static final String MESSAGE_NOTHING_TO_UNDO = "There is no change to undo";
+    private static final String MESSAGE_REDONE = "Change redone: %1$d persons added, %2$d persons deleted";
+    private static final String MESSAGE_UNDONE = "Change undone: %1$d persons added, %2$d persons deleted";
+    private static final String MESSAGE_UNDO_IN_TRANSACTION = "Changes cannot be undone or redone during a "
+                                                            + "transaction. Use '%1$s' instead.";
     private static final String MESSAGE_STORAGE_FILE_CREATED = "Created new empty storage file: %1$s";
     private static final String MESSAGE_WELCOME = "Welcome to your Address Book!";
     private static final String MESSAGE_USING_DEFAULT_FILE = "Using default storage file : " + DEFAULT_STORAGE_FILEPATH;
 
+    /*
+     * Files imported with the import command are in CSV format if their names end with the extension below,
+     * one person per line as NAME,PHONE,EMAIL (optionally with a header line).
+     */
+    private static final String IMPORT_CSV_FILE_EXTENSION = ".csv";
+    private static final String IMPORT_CSV_HEADER = "name,phone,email";
+    private static final char CSV_SEPARATOR = ',';
+
+    /**
+     * Size of the buffer that persons are encoded into before being written to the storage or export file.
+     */
+    private static final int FILE_OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Maximum number of rejected lines reported one by one by the import command.
+     */
+    private static final int IMPORT_MAX_REJECTED_LINES_SHOWN = 20;
+
     // These are the prefix strings to define the data type of a command parameter
     private static final String PERSON_DATA_PREFIX_PHONE = "p/";
     private static final String PERSON_DATA_PREFIX_EMAIL = "e/";
 
+    /*
+     * Regular expressions used to decode and validate person data, compiled once as they are used
+     * for every person loaded or imported.
+     */
+    private static final Pattern PERSON_DATA_PREFIX_PATTERN =
+            Pattern.compile(PERSON_DATA_PREFIX_PHONE + '|' + PERSON_DATA_PREFIX_EMAIL);
+    private static final Pattern PERSON_NAME_PATTERN = Pattern.compile("[\\w\\s]+");
+    private static final Pattern PERSON_PHONE_PATTERN = Pattern.compile("\\d+");
+    private static final Pattern PERSON_EMAIL_PATTERN = Pattern.compile("\\S+@\\S+\\.\\S+");
+
     private static final String PERSON_STRING_REPRESENTATION = "%1$s " // name
                                                             + PERSON_DATA_PREFIX_PHONE + "%2$s " // phone
                                                             + PERSON_DATA_PREFIX_EMAIL + "%3$s"; // email
@@ -105,26 +247,128 @@ public class AddressBook {
                                                       + PERSON_DATA_PREFIX_EMAIL + "EMAIL";
     private static final String COMMAND_ADD_EXAMPLE = COMMAND_ADD_WORD + " John Doe p/98765432 e/johnd@gmail.com";
 
+    private static final String COMMAND_IMPORT_WORD = "import";
+    private static final String COMMAND_IMPORT_DESC = "Adds all persons in a file to the address book. The file "
+                                                    + "is in the storage file format, or in CSV format if its "
+                                                    + "name ends with " + IMPORT_CSV_FILE_EXTENSION + ".";
+    private static final String COMMAND_IMPORT_PARAMETERS = "FILE_PATH";
+    private static final String COMMAND_IMPORT_EXAMPLE = COMMAND_IMPORT_WORD + " contacts.csv";
+
+    private static final String COMMAND_EXPORT_WORD = "export";
+    private static final String COMMAND_EXPORT_DESC = "Writes all persons, or the persons in the last find/list call, "
+                                                    + "to a file in the storage file format, CSV or JSON.";
+    private static final String COMMAND_EXPORT_FORMAT_TXT = "txt";
+    private static final String COMMAND_EXPORT_FORMAT_CSV = "csv";
+    private static final String COMMAND_EXPORT_FORMAT_JSON = "json";
+    private static final String COMMAND_EXPORT_OPTION_LISTING = "--listing";
+    private static final String COMMAND_EXPORT_PARAMETERS = "FILE_PATH [" + COMMAND_EXPORT_FORMAT_TXT + "|"
+                                                          + COMMAND_EXPORT_FORMAT_CSV + "|"
+                                                          + COMMAND_EXPORT_FORMAT_JSON + "] ["
+                                                          + COMMAND_EXPORT_OPTION_LISTING + "]";
+    private static final String COMMAND_EXPORT_EXAMPLE = COMMAND_EXPORT_WORD + " contacts.json json";
+
     private static final String COMMAND_FIND_WORD = "find";
+    private static final String COMMAND_FIND_OPTION_TOP = "--top";
+    private static final String COMMAND_FIND_OPTION_CONTAINS = "--contains";
     private static final String COMMAND_FIND_DESC = "Finds all persons whose names contain any of the specified "
-                                        + "keywords (case-sensitive) and displays them as a list with index numbers.";
-    private static final String COMMAND_FIND_PARAMETERS = "KEYWORD [MORE_KEYWORDS]";
+                                        + "keywords (case-sensitive) and displays them as a list with index numbers. "
+                                        + "With " + COMMAND_FIND_OPTION_TOP + ", displays only the best matches, "
+                                        + "best first, also matching words that start with a keyword. "
+                                        + "With " + COMMAND_FIND_OPTION_CONTAINS + ", finds all persons whose names "
+                                        + "contain the text anywhere, even inside a word.";
+    private static final String COMMAND_FIND_PARAMETERS = "[" + COMMAND_FIND_OPTION_TOP + " COUNT] "
+                                                        + "KEYWORD [MORE_KEYWORDS] | "
+                                                        + COMMAND_FIND_OPTION_CONTAINS + " TEXT";
     private static final String COMMAND_FIND_EXAMPLE = COMMAND_FIND_WORD + " alice bob charlie";
+    private static final String COMMAND_FIND_TOP_EXAMPLE = COMMAND_FIND_WORD + " " + COMMAND_FIND_OPTION_TOP
+                                                         + " 10 alice bob";
+    private static final String COMMAND_FIND_CONTAINS_EXAMPLE = COMMAND_FIND_WORD + " " + COMMAND_FIND_OPTION_CONTAINS
+                                                              + " son";
 
     private static final String COMMAND_LIST_WORD = "list";
-    private static final String COMMAND_LIST_DESC = "Displays all persons as a list with index numbers.";
+    private static final String COMMAND_LIST_DESC = "Displays all persons as a list with index numbers, "
+                                                    + "optionally sorted and limited to a range of values, "
+                                                    + "one page at a time if a page number is given.";
+    private static final String COMMAND_LIST_OPTION_PAGE = "--page";
+    private static final String COMMAND_LIST_OPTION_SIZE = "--size";
+    private static final String COMMAND_LIST_OPTION_SORT = "--sort";
+    private static final String COMMAND_LIST_OPTION_FROM = "--from";
+    private static final String COMMAND_LIST_OPTION_TO = "--to";
+    private static final String COMMAND_LIST_SORT_BY_NAME = "name";
+    private static final String COMMAND_LIST_SORT_BY_PHONE = "phone";
+    private static final String COMMAND_LIST_SORT_BY_EMAIL = "email";
+    private static final String COMMAND_LIST_PARAMETERS = "[" + COMMAND_LIST_OPTION_SORT + " "
+                                                        + COMMAND_LIST_SORT_BY_NAME + "|"
+                                                        + COMMAND_LIST_SORT_BY_PHONE + "|"
+                                                        + COMMAND_LIST_SORT_BY_EMAIL + " ["
+                                                        + COMMAND_LIST_OPTION_FROM + " FIRST_VALUE] ["
+                                                        + COMMAND_LIST_OPTION_TO + " LAST_VALUE_PREFIX]] ["
+                                                        + COMMAND_LIST_OPTION_PAGE + " PAGE_NUMBER ["
+                                                        + COMMAND_LIST_OPTION_SIZE + " PAGE_SIZE]]";
     private static final String COMMAND_LIST_EXAMPLE = COMMAND_LIST_WORD;
+    private static final String COMMAND_LIST_PAGED_EXAMPLE = COMMAND_LIST_WORD + " "
+                                                        + COMMAND_LIST_OPTION_PAGE + " 1";
+    private static final String COMMAND_LIST_SORTED_EXAMPLE = COMMAND_LIST_WORD + " "
+                                                        + COMMAND_LIST_OPTION_SORT + " name "
+                                                        + COMMAND_LIST_OPTION_FROM + " A "
+                                                        + COMMAND_LIST_OPTION_TO + " C";
+
+    private static final String COMMAND_NEXT_WORD = "next";
+    private static final String COMMAND_NEXT_DESC = "Displays the next page of the last paged listing.";
+    private static final String COMMAND_NEXT_EXAMPLE = COMMAND_NEXT_WORD;
+
+    private static final String COMMAND_PREV_WORD = "prev";
+    private static final String COMMAND_PREV_DESC = "Displays the previous page of the last paged listing.";
+    private static final String COMMAND_PREV_EXAMPLE = COMMAND_PREV_WORD;
 
     private static final String COMMAND_DELETE_WORD = "delete";
-    private static final String COMMAND_DELETE_DESC = "Deletes a person identified by the index number used in "
+    private static final String COMMAND_DELETE_DESC = "Deletes the persons identified by the index numbers used in "
                                                     + "the last find/list call.";
-    private static final String COMMAND_DELETE_PARAMETER = "INDEX";
+    private static final String COMMAND_DELETE_PARAMETER = "INDEX[,MORE_INDEXES] (an index may be a range FROM-TO)";
     private static final String COMMAND_DELETE_EXAMPLE = COMMAND_DELETE_WORD + " 1";
+    private static final String COMMAND_DELETE_MANY_EXAMPLE = COMMAND_DELETE_WORD + " 1,4,7-9";
+    private static final char DELETE_INDEX_SEPARATOR = ',';
+    private static final char DELETE_INDEX_RANGE_MARKER = '-';
+
+    private static final String COMMAND_DELETE_MATCHING_WORD = "delete-matching";
+    private static final String COMMAND_DELETE_MATCHING_DESC = "Deletes all persons whose names contain any of "
+                                                    + "the specified keywords (case-sensitive).";
+    private static final String COMMAND_DELETE_MATCHING_PARAMETERS = "KEYWORD [MORE_KEYWORDS]";
+    private static final String COMMAND_DELETE_MATCHING_EXAMPLE = COMMAND_DELETE_MATCHING_WORD + " alice bob";
 
     private static final String COMMAND_CLEAR_WORD = "clear";
     private static final String COMMAND_CLEAR_DESC = "Clears address book permanently.";
     private static final String COMMAND_CLEAR_EXAMPLE = COMMAND_CLEAR_WORD;
 
+    private static final String COMMAND_UNDO_WORD = "undo";
+    private static final String COMMAND_UNDO_DESC = "Undoes the latest change to the address book that was not "
+                                                  + "undone yet. A committed transaction is undone as a whole.";
+    private static final String COMMAND_UNDO_EXAMPLE = COMMAND_UNDO_WORD;
+
+    private static final String COMMAND_REDO_WORD = "redo";
+    private static final String COMMAND_REDO_DESC = "Redoes the latest change undone, if no other change was "
+                                                  + "made since.";
+    private static final String COMMAND_REDO_EXAMPLE = COMMAND_REDO_WORD;
+
+    private static final String COMMAND_BEGIN_WORD = "begin";
+    private static final String COMMAND_BEGIN_DESC = "Starts a transaction. Changes made until the transaction is "
+                                                   + "committed are not saved, and can be rolled back.";
+    private static final String COMMAND_BEGIN_EXAMPLE = COMMAND_BEGIN_WORD;
+
+    private static final String COMMAND_COMMIT_WORD = "commit";
+    private static final String COMMAND_COMMIT_DESC = "Saves all changes made in the transaction in progress at once.";
+    private static final String COMMAND_COMMIT_EXAMPLE = COMMAND_COMMIT_WORD;
+
+    private static final String COMMAND_ROLLBACK_WORD = "rollback";
+    private static final String COMMAND_ROLLBACK_DESC = "Undoes all changes made in the transaction in progress.";
+    private static final String COMMAND_ROLLBACK_EXAMPLE = COMMAND_ROLLBACK_WORD;
+
+    private static final String COMMAND_STATS_WORD = "stats";
+    private static final String COMMAND_STATS_DESC = "Shows statistics about how the storage file has been used, "
+                                                   + "how often find results were reused, and how far replication "
+                                                   + "has got.";
+    private static final String COMMAND_STATS_EXAMPLE = COMMAND_STATS_WORD;
+
     private static final String COMMAND_HELP_WORD = "help";
     private static final String COMMAND_HELP_DESC = "Shows program usage instructions.";
     private static final String COMMAND_HELP_EXAMPLE = COMMAND_HELP_WORD;
@@ -133,6 +377,16 @@ public class AddressBook {
     private static final String COMMAND_EXIT_DESC = "Exits the program.";
     private static final String COMMAND_EXIT_EXAMPLE = COMMAND_EXIT_WORD;
 
+    /**
+     * All command words, so that the command word in a user's input can be matched without copying it.
+     */
+    private static final String[] COMMAND_WORDS = {
+        COMMAND_ADD_WORD, COMMAND_IMPORT_WORD, COMMAND_EXPORT_WORD, COMMAND_FIND_WORD, COMMAND_LIST_WORD,
+        COMMAND_NEXT_WORD, COMMAND_PREV_WORD, COMMAND_DELETE_WORD, COMMAND_DELETE_MATCHING_WORD, COMMAND_CLEAR_WORD,
+        COMMAND_UNDO_WORD, COMMAND_REDO_WORD, COMMAND_BEGIN_WORD, COMMAND_COMMIT_WORD, COMMAND_ROLLBACK_WORD,
+        COMMAND_STATS_WORD, COMMAND_HELP_WORD, COMMAND_EXIT_WORD
+    };
+
     private static final String DIVIDER = "===================================================";
 
 
@@ -155,6 +409,136 @@ public class AddressBook {
      */
     private static final int DISPLAYED_INDEX_OFFSET = 1;
 
+    /**
+     * Suffix of the temporary file (in the same directory as the storage file) that a save is written to
+     * before it atomically replaces the storage file.
+     */
+    private static final String STORAGE_TEMP_FILE_SUFFIX = ".tmp";
+
+    /**
+     * Suffix of the sidecar lock file (next to the storage file) that processes sharing the same storage file
+     * lock before writing. The lock file also holds the version stamp of the storage file.
+     */
+    private static final String STORAGE_LOCK_FILE_SUFFIX = ".lock";
+
+    /**
+     * Suffix of the index file (next to the storage file) that the sorted orders are saved to on exit, so that
+     * they need not be built again after the next start up.
+     */
+    private static final String STORAGE_INDEX_FILE_SUFFIX = ".index";
+
+    /*
+     * The index file starts with the header below, all numbers being big-endian:
+     *    magic number and format version (int, int)
+     *    size and CRC-32 checksum of the storage file content the orders were saved for (long, long)
+     *    number of persons (int)
+     *    length of the sorted order of each data element of a person: the number of persons, or 0 if the
+     *    sorted order of that data element is not in the file (one int each)
+     * It is followed by each sorted order (the positions of all persons in the full list, as ints), and ends
+     * with the CRC-32 checksum of everything before it (long).
+     */
+    private static final int INDEX_FILE_MAGIC = 0x41424958; // "ABIX"
+    private static final int INDEX_FILE_FORMAT_VERSION = 1;
+    private static final int INDEX_FILE_ORDER_LENGTHS_OFFSET = 2 * Integer.BYTES + 2 * Long.BYTES + Integer.BYTES;
+    private static final int INDEX_FILE_HEADER_SIZE = INDEX_FILE_ORDER_LENGTHS_OFFSET
+                                                      + PERSON_DATA_COUNT * Integer.BYTES;
+
+    /*
+     * The paged store keeps the persons in the storage file itself, in pages of a fixed size that are read into
+     * a page cache of bounded size when needed, instead of loading all persons into memory. It is turned on with
+     * the system properties below, e.g. java -Daddressbook.store=paged -Daddressbook.store.cache=64 ...
+     *    addressbook.store=paged    : use the storage file (empty, or a paged store) as a paged store
+     *    addressbook.store.cache=MB : memory used by the page cache, in megabytes
+     */
+    private static final String STORE_PROPERTY = "addressbook.store";
+    private static final String STORE_PAGED = "paged";
+    private static final String PAGE_CACHE_SIZE_PROPERTY = "addressbook.store.cache";
+    private static final long DEFAULT_PAGE_CACHE_MEGABYTES = 64;
+
+    /**
+     * Number of lines of an imported file read and decoded at a time. With the paged store, the persons of each
+     * batch are added before the next batch is read, so the file need not fit in memory.
+     */
+    private static final int IMPORT_BATCH_SIZE = 100_000;
+
+    /*
+     * The fsync policy decides when saved data is forced to the disk, trading durability for speed.
+     * It is chosen with the system property below, e.g. java -Daddressbook.fsync=periodic ...
+     *    always   : every save is forced to disk before it replaces the storage file (default)
+     *    never    : leave it to the OS to flush the data eventually
+     *    periodic : force a save only if the last forced save is older than the fsync interval
+     */
+    private static final String FSYNC_POLICY_PROPERTY = "addressbook.fsync";
+    private static final String FSYNC_INTERVAL_PROPERTY = "addressbook.fsync.interval";
+    private static final String FSYNC_POLICY_ALWAYS = "always";
+    private static final String FSYNC_POLICY_NEVER = "never";
+    private static final String FSYNC_POLICY_PERIODIC = "periodic";
+    private static final long DEFAULT_FSYNC_INTERVAL_MILLIS = 1000;
+
+    /**
+     * System property that turns on watch mode, e.g. java -Daddressbook.watch=true ...
+     * In watch mode, changes made to the storage file by other programs are applied while the program runs.
+     */
+    private static final String WATCH_MODE_PROPERTY = "addressbook.watch";
+
+    /**
+     * System property that sets how many changes can be undone, e.g. java -Daddressbook.history=100 ...
+     * A depth of 0 turns undo off.
+     */
+    private static final String UNDO_HISTORY_DEPTH_PROPERTY = "addressbook.history";
+    private static final int DEFAULT_UNDO_HISTORY_DEPTH = 50;
+
+    /**
+     * System property that sets how many find results are cached, e.g. java -Daddressbook.findcache=200 ...
+     * A size of 0 turns the cache off.
+     */
+    private static final String FIND_CACHE_SIZE_PROPERTY = "addressbook.findcache";
+    private static final int DEFAULT_FIND_CACHE_SIZE = 64;
+
+    /*
+     * Replication lets read-only replicas follow the changes of a primary over a local TCP socket.
+     * It is turned on with one of the system properties below:
+     *    addressbook.replication.port=PORT         : be the primary, serving replicas on PORT (0 for any port)
+     *    addressbook.replication.primary=HOST:PORT : be a read-only replica of the primary at HOST:PORT
+     */
+    private static final String REPLICATION_PORT_PROPERTY = "addressbook.replication.port";
+    private static final String REPLICATION_PRIMARY_PROPERTY = "addressbook.replication.primary";
+
+    /**
+     * Number of the latest replication records kept by the primary. A replica that is further behind than
+     * this catches up from a snapshot instead.
+     */
+    private static final int REPLICATION_LOG_SIZE = 10000;
+
+    /**
+     * Time (in milliseconds) after which the primary tells an idle replica that there is nothing new, and
+     * after which a replica tries again to connect to the primary.
+     */
+    private static final int REPLICATION_HEARTBEAT_MILLIS = 1000;
+
+    // Types of the messages that the primary sends to a replica
+    private static final byte REPLICATION_MESSAGE_SNAPSHOT = 'S';
+    private static final byte REPLICATION_MESSAGE_RECORD = 'R';
+    private static final byte REPLICATION_MESSAGE_HEARTBEAT = 'H';
+
+    /**
+     * Maximum number of persons in a find result for which the formatted listing is cached as well.
+     * Larger results are formatted again each time, so that the cache stays small.
+     */
+    private static final int FIND_CACHE_MAX_RENDERED_PERSONS = 1000;
+
+    /**
+     * Maximum number of positions held by all find results in the cache together (4 bytes each). Results are
+     * evicted to stay within it, and a larger result is not cached at all, so that the cache stays small
+     * however many persons the address book holds (with the paged store, many more than fit in memory).
+     */
+    private static final int FIND_CACHE_MAX_POSITIONS = 1_000_000;
+
+    /**
+     * Number of persons on a page of a paged listing, if the page size is not given.
+     */
+    private static final int DEFAULT_PAGE_SIZE = 20;
+
     /**
      * If the first non-whitespace character in a user's input line is this, that line will be ignored.
      */
@@ -168,6 +552,69 @@ public class AddressBook {
      */
     private static final Scanner SCANNER = new Scanner(System.in);
 
+    /**
+     * Buffer (outside the heap) reused by every save and export to encode persons into, the encoder used
+     * to do so, and the checksum of the bytes written out of the buffer since the checksum was last reset.
+     * Persons are written to the file whenever the buffer is full, so no encoded copy of the whole list is
+     * ever built.
+     */
+    private static final ByteBuffer FILE_OUTPUT_BUFFER = ByteBuffer.allocateDirect(FILE_OUTPUT_BUFFER_SIZE);
+    private static final CharsetEncoder FILE_OUTPUT_ENCODER = StandardCharsets.UTF_8.newEncoder();
+    private static final CRC32 FILE_OUTPUT_CHECKSUM = new CRC32();
+
+    /**
+     * Buffered output that listings are streamed to row by row, instead of building the whole listing
+     * as one string first. It writes to the same stream as {@link #showToUser(String...)} and is flushed
+     * at the end of every listing, so the order of the output is kept.
+     */
+    private static final PrintWriter LISTING_OUTPUT =
+            new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+
+    /**
+     * Rows of a listing are formatted into this buffer, and copied from it to the listing output through
+     * {@link #listingOutputChars} once the buffer is full, so that formatting a row creates no new strings.
+     */
+    private static final StringBuilder LISTING_ROWS_BUFFER = new StringBuilder();
+    private static final int LISTING_ROWS_BUFFER_FLUSH_SIZE = 8 * 1024;
+    private static char[] listingOutputChars = new char[LISTING_ROWS_BUFFER_FLUSH_SIZE];
+
+    /*
+     * NOTE : =============================================================================================
+     * The templates used for every row of a listing are broken up into their fixed text and their
+     * arguments once, instead of being parsed by String.format for every row. A compiled template only
+     * supports arguments written as '%1$s' or '%1$d' etc, and '%%'.
+     * ====================================================================================================
+     */
+
+    /**
+     * A message template broken up into its fixed text and the arguments placed between them.
+     */
+    private static final class CompiledTemplate {
+        /** The fixed text before, between and after the arguments; one more than the arguments. */
+        final String[] literals;
+        /** 0-based index of each argument placed in the template, in order. */
+        final int[] argumentIndexes;
+
+        CompiledTemplate(String[] literals, int[] argumentIndexes) {
+            this.literals = literals;
+            this.argumentIndexes = argumentIndexes;
+        }
+    }
+
+    private static final CompiledTemplate DISPLAY_LIST_ELEMENT_INDEX_TEMPLATE =
+            compileTemplate(MESSAGE_DISPLAY_LIST_ELEMENT_INDEX);
+
+    /**
+     * Template for showing a person's data. Its arguments are the data elements of a person, in the order
+     * of the PERSON_DATA_INDEX_* constants, so a person can be passed to it as the arguments.
+     */
+    private static final CompiledTemplate DISPLAY_PERSON_DATA_TEMPLATE = compileTemplate(MESSAGE_DISPLAY_PERSON_DATA);
+
+    /**
+     * Template for the string representation of a person in the storage file, taking a person as the arguments.
+     */
+    private static final CompiledTemplate PERSON_STRING_TEMPLATE = compileTemplate(PERSON_STRING_REPRESENTATION);
+
     /*
      * NOTE : =============================================================================================
      * Note that the type of the variable below can also be declared as List<String[]>, as follows:
@@ -184,636 +631,3958 @@ public class AddressBook {
     private static final ArrayList<String[]> ALL_PERSONS = new ArrayList<>();
 
     /**
-     * Stores the most recent list of persons shown to the user as a result of a user command.
-     * This is a subset of the full list. Deleting persons in the pull list does not delete
-     * those persons from this list.
+     * Sorted orders of all persons, one for each data element of a person, in the same order as the elements
+     * of a person (i.e. the order at {@link #PERSON_DATA_INDEX_NAME} orders persons by name). Each holds the
+     * positions of all persons in the full list, ordered by the value of that data element, and by position for
+     * persons having the same value. The orders are kept up to date on every change to the full list, so that
+     * sorted listings need not sort the full list again.
+     * An order is only built the first time a listing is sorted by its data element (null until then), unless
+     * it was loaded from the index file. Orders loaded from the index file are backed by the memory-mapped file
+     * until the full list is first changed. Otherwise an order is backed by an array that may have room for
+     * more positions past its limit, so that it is changed in place, as persons are added.
+     */
+    private static final IntBuffer[] SORTED_ORDERS = new IntBuffer[PERSON_DATA_COUNT];
+
+    /*
+     * NOTE : =============================================================================================
+     * The variables below make up the latest person listing view: the most recent list of persons shown
+     * to the user as a result of a user command. Instead of a copy of the persons shown, the view holds
+     * the positions (in the full list) of the persons shown, or nothing at all if the whole list was shown.
+     * Changes made to the full list after the listing was shown are recorded, so that a display index can
+     * still be traced to the person it showed. Deleting persons in the full list does not delete those
+     * persons from the view; the view tells that they are no longer in the full list.
+     * ====================================================================================================
      */
-    private static ArrayList<String[]> latestPersonListingView = getAllPersonsInAddressBook(); // initial view is of all
 
     /**
-     * The path to the file used for storing person data.
+     * True if the latest listing view is the full list as it is now (the initial view, before any listing).
      */
-    private static String storageFilePath;
+    private static boolean isLatestListingLive = true;
 
-    /*
-     * NOTE : =============================================================
-     * Notice how this method solves the whole problem at a very high level.
-     * We can understand the high-level logic of the program by reading this
-     * method alone.
-     * If the reader wants a deeper understanding of the solution, she can go
-     * to the next level of abstraction by reading the methods that are
-     * referenced by the high-level method below.
-     * ====================================================================
+    /**
+     * Positions (in the full list, at the time of the listing) of the persons in the latest listing, in
+     * display order. Null if the listing showed the whole full list.
      */
+    private static int[] latestListingPositions = null;
 
-    public static void main(String[] args) {
-        showWelcomeMessage();
-        processProgramArgs(args);
-        loadDataFromStorage();
-        while (true) {
-            String userCommand = getUserInput();
-            echoUserCommand(userCommand);
-            String feedback = executeCommand(userCommand);
-            showResultToUser(feedback);
-        }
-    }
+    /**
+     * Number of persons in the latest listing.
+     */
+    private static int latestListingSize = 0;
 
-    /*
-     * NOTE : =============================================================
-     * The method header comment can be omitted if the method is trivial
-     * and the header comment is going to be almost identical to the method
-     * signature anyway.
-     * ====================================================================
+    /**
+     * Changes made to the full list since the latest listing was shown, oldest first. Persons added to the
+     * end of the full list are left out, as they do not move any person in the listing.
      */
+    private static final ArrayList<ModelChange> CHANGES_SINCE_LATEST_LISTING = new ArrayList<>();
 
-    private static void showWelcomeMessage() {
-        showToUser(DIVIDER, DIVIDER, VERSION, MESSAGE_WELCOME, DIVIDER);
+    /**
+     * A change to the full list of persons: some persons inserted into it, or some persons deleted from it.
+     */
+    private static final class ModelChange {
+        final boolean isInsertion;
+        /** Ascending positions of the persons in the full list; after insertion, or before deletion. */
+        final int[] positions;
+        /** The persons inserted or deleted, in the same order as their positions. */
+        final ArrayList<String[]> persons;
+
+        ModelChange(boolean isInsertion, int[] positions, ArrayList<String[]> persons) {
+            this.isInsertion = isInsertion;
+            this.positions = positions;
+            this.persons = persons;
+        }
     }
 
-    private static void showResultToUser(String result) {
-        showToUser(result, DIVIDER);
-    }
+    /**
+     * True while a transaction is in progress. Changes made during a transaction are only saved on commit.
+     */
+    private static boolean isInTransaction = false;
+
+    /**
+     * Changes made to the full list during the transaction in progress, oldest first.
+     */
+    private static final ArrayList<ModelChange> CHANGES_IN_TRANSACTION = new ArrayList<>();
 
     /*
-     * NOTE : =============================================================
-     * Parameter description can be omitted from the method header comment
-     * if the parameter name is self-explanatory.
-     * In the method below, '@param userInput' comment has been omitted.
-     * ====================================================================
+     * NOTE : =============================================================================================
+     * Undo and redo replay recorded changes backwards instead of keeping copies of the full list, so a
+     * step in the history costs as much memory as the change it records. The changes a command makes are
+     * collected as it runs, and become one step in the undo history when the next command starts (or, for
+     * a transaction, when the next command after the commit starts). Undoing a step makes the reverse
+     * changes, which are in turn kept as the step that redoes it.
+     * Reloading changes made by another process forgets the history, as it no longer fits the full list.
+     * ====================================================================================================
      */
 
     /**
-     * Echoes the user input back to the user.
+     * Changes made to the full list by the latest command (or the transaction in progress), oldest first.
      */
-    private static void echoUserCommand(String userCommand) {
-        showToUser("[Command entered:" + userCommand + "]");
-    }
+    private static final ArrayList<ModelChange> CHANGES_IN_LATEST_COMMAND = new ArrayList<>();
 
     /**
-     * Processes the program main method run arguments.
-     * If a valid storage file is specified, sets up that file for storage.
-     * Otherwise sets up the default file for storage.
-     *
-     * @param args full program arguments passed to application main method
+     * Steps that can be undone, oldest first. Each step is the list of changes made by a command, oldest first.
+     * Holds at most as many steps as the undo history depth.
      */
-    private static void processProgramArgs(String[] args) {
-        if (args.length >= 2) {
-            showToUser(MESSAGE_INVALID_PROGRAM_ARGS);
-            exitProgram();
-        }
+    private static final ArrayDeque<ArrayList<ModelChange>> UNDO_HISTORY = new ArrayDeque<>();
 
-        if (args.length == 1) {
-            setupGivenFileForStorage(args[0]);
-        }
+    /**
+     * Steps that redo the changes undone, latest undone last. Forgotten when a new change is made.
+     */
+    private static final ArrayDeque<ArrayList<ModelChange>> REDO_HISTORY = new ArrayDeque<>();
 
-        if(args.length == 0) {
-            setupDefaultFileForStorage();
-        }
-    }
+    /**
+     * Number of changes made to the full list since the program started. Results computed from the full list
+     * are valid only as long as this stays the same.
+     */
+    private static long modelVersion = 0;
 
     /**
-     * Sets up the storage file based on the supplied file path.
-     * Creates the file if it is missing.
-     * Exits if the file name is not acceptable.
+     * Recent results of the find command, keyed by their normalised keywords, least recently used first.
+     * Holds at most as many results as the find cache size, and at most {@link #FIND_CACHE_MAX_POSITIONS}
+     * positions in all, which are counted as well.
      */
-    private static void setupGivenFileForStorage(String filePath) {
+    private static final LinkedHashMap<String, FindResult> FIND_RESULT_CACHE = new LinkedHashMap<>(16, 0.75f, true);
+    private static long findCachePositionCount = 0;
 
-        if (!isValidFilePath(filePath)) {
-            showToUser(String.format(MESSAGE_INVALID_FILE, filePath));
-            exitProgram();
-        }
+    /*
+     * NOTE : =============================================================================================
+     * Finding text anywhere inside names cannot use the words of the names, so it scans all of them.
+     * To keep the scan fast, the names of all persons are packed, UTF-8 encoded, one after another in
+     * a single byte array, in the order of the full list. The array is scanned for places holding both the
+     * first and the last byte of the text, the right distance apart, and only the candidate positions found
+     * are compared byte by byte. The scan compares a vector register of bytes at a time with the Vector API if
+     * the jdk.incubator.vector module is available (see VectorNameScanner, in src-vector), or else 8 bytes at a
+     * time (as one long). Names of persons added at the end of the full list are appended to the packed names;
+     * other changes make the names be packed again on the next search.
+     * ====================================================================================================
+     */
 
-        storageFilePath = filePath;
-        createFileIfMissing(filePath);
-    }
+    /**
+     * The names of the first {@link #packedNameCount} persons in the full list, UTF-8 encoded and packed one
+     * after another at the start of the array.
+     */
+    private static byte[] packedNames = new byte[16];
 
     /**
-     * Displays the goodbye message and exits the runtime.
+     * Where each packed name starts in the packed names, by position of the person in the full list, followed by
+     * the length of the packed names (so the name at position i ends where the one at i + 1 starts).
      */
-    private static void exitProgram() {
-        showToUser(MESSAGE_GOODBYE, DIVIDER, DIVIDER);
-        System.exit(0);
-    }
+    private static int[] packedNameOffsets = new int[16];
 
     /**
-     * Sets up the storage based on the default file.
-     * Creates file if missing.
-     * Exits program if the file cannot be created.
+     * Number of persons, from the start of the full list, whose names are packed.
      */
-    private static void setupDefaultFileForStorage() {
-        showToUser(MESSAGE_USING_DEFAULT_FILE);
-        storageFilePath = DEFAULT_STORAGE_FILEPATH;
-        createFileIfMissing(storageFilePath);
-    }
+    private static int packedNameCount = 0;
 
     /**
-     * Returns true if the given file path is valid.
-     * A file path is valid if it has a valid parent directory as determined by {@link #hasValidParentDirectory}
-     * and a valid file name as determined by {@link #hasValidFileName}.
+     * The model version the packed names are up to date with, or -1 if they were never packed.
      */
-    private static boolean isValidFilePath(String filePath) {
-        if (filePath == null) {
-            return false;
-        }
-        Path filePathToValidate;
-        try {
-            filePathToValidate = Paths.get(filePath);
-        } catch (InvalidPathException ipe) {
-            return false;
-        }
-        return hasValidParentDirectory(filePathToValidate) && hasValidFileName(filePathToValidate);
-    }
+    private static long packedNamesModelVersion = -1;
 
     /**
-     * Returns true if the file path has a parent directory that exists.
+     * Makes the Vector API scanner of the packed names, or null if the jdk.incubator.vector module is not
+     * available or the scanner was not compiled.
      */
-    private static boolean hasValidParentDirectory(Path filePath) {
-        Path parentDirectory = filePath.getParent();
-        return parentDirectory == null || Files.isDirectory(parentDirectory);
-    }
+    private static final Constructor<?> VECTOR_NAME_SCANNER_CONSTRUCTOR = findVectorNameScannerConstructor();
 
     /**
-     * Returns true if file path has a valid file name.
-     * File name is valid if it has an extension and no reserved characters.
-     * Reserved characters are OS-dependent.
-     * If a file already exists, it must be a regular file.
+     * View of a byte array as little-endian longs, used to read 8 bytes of the packed names at a time.
      */
-    private static boolean hasValidFileName(Path filePath) {
-        return filePath.getFileName().toString().lastIndexOf('.') > 0
-                && (!Files.exists(filePath) || Files.isRegularFile(filePath));
-    }
+    private static final VarHandle PACKED_NAMES_AS_LONGS =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /** The lowest and highest bit of each of the 8 bytes in a long. */
+    private static final long LOW_BIT_OF_EACH_BYTE = 0x0101010101010101L;
+    private static final long HIGH_BIT_OF_EACH_BYTE = 0x8080808080808080L;
 
     /**
-     * Initialises the in-memory data using the storage file.
-     * Assumption: The file exists.
+     * The result of a find command: the positions of the persons found, and their formatted listing.
      */
-    private static void loadDataFromStorage() {
-        initialiseAddressBookModel(loadPersonsFromFile(storageFilePath));
+    private static final class FindResult {
+        /** The model version the result was computed at. */
+        final long modelVersion;
+        final int[] positions;
+        /** The rows of the listing as shown to the user, or null if the result was too large to keep them. */
+        final String renderedRows;
+
+        FindResult(long modelVersion, int[] positions, String renderedRows) {
+            this.modelVersion = modelVersion;
+            this.positions = positions;
+            this.renderedRows = renderedRows;
+        }
     }
 
-
-    /*
-     * ===========================================
-     *           COMMAND LOGIC
-     * ===========================================
+    /**
+     * The page of the latest person listing view last shown to the user, and the size of its pages.
+     * The page number is 0 if the latest listing was not paged.
      */
+    private static int latestListingPageNumber = 0;
+    private static int latestListingPageSize = DEFAULT_PAGE_SIZE;
 
     /**
-     * Executes the command as specified by the {@code userInputString}
-     *
-     * @param userInputString  raw input from user
-     * @return  feedback about how the command was executed
+     * The path to the file used for storing person data.
+     */
+    private static String storageFilePath;
+
+    /**
+     * The time (in milliseconds) at which a save was last forced to disk. Used by the periodic fsync policy.
+     */
+    private static long lastForcedSaveMillis = 0;
+
+    /**
+     * The paged store that holds the persons instead of the full list, or null if it is not used.
+     * See {@link PagedStore}.
+     */
+    private static PagedStore pagedStore;
+
+    /**
+     * The persons of the address book, as read through {@link #getPersonCount}, {@link #getPersonAt} and
+     * {@link #getPersonIterator}: the full list, or the paged store if it is used.
+     */
+    private static List<String[]> personsInModel = ALL_PERSONS;
+
+    /*
+     * NOTE : =============================================================================================
+     * Several processes may share the same storage file. Writers take turns by locking the sidecar lock
+     * file, and detect changes made by others (optimistically) by comparing the version stamp kept in
+     * the lock file, and the size and modification time of the storage file, with the ones seen last.
+     * ====================================================================================================
+     */
+
+    /**
+     * Channel to the sidecar lock file of the storage file. Opened on first use.
+     */
+    private static FileChannel storageLockChannel;
+
+    /**
+     * The lock currently held on the sidecar lock file, or null if it is not held.
+     */
+    private static FileLock storageLock;
+
+    /**
+     * The version stamp of the storage file, as of the last time this process loaded or saved it.
+     */
+    private static long knownStorageVersion = 0;
+
+    /**
+     * The size and modification time of the storage file, as of the last time this process loaded or saved it.
+     */
+    private static volatile long knownStorageFileSize = -1;
+    private static volatile long knownStorageFileModifiedMillis = -1;
+
+    /**
+     * The CRC-32 checksum of the storage file content as this process last loaded or saved it, or -1 if the
+     * model may differ from that content.
+     */
+    private static long knownStorageFileChecksum = -1;
+
+    // Counters shown by the stats command
+    private static long storageWriteCount = 0;
+    private static long storageLockWaitCount = 0;
+    private static long storageReloadCount = 0;
+    private static long watchedChangeCount = 0;
+    private static long findCacheHitCount = 0;
+    private static long findCacheMissCount = 0;
+
+    /*
+     * NOTE : =============================================================================================
+     * In watch mode, a background thread waits for changes to the storage file and decodes the new content.
+     * The decoded content is handed over through the variable below, and applied to the model by the main
+     * thread between commands. Hence the model is only ever touched by the main thread, and a running
+     * command never waits for a reload.
+     * ====================================================================================================
+     */
+
+    /*
+     * NOTE : =============================================================================================
+     * In replication mode, the primary ships the changes that each command (or transaction) made to the
+     * full list to its replicas as one record, numbered in order. A sender thread serves each replica from
+     * a log of the latest records, or from a snapshot of the full list as of the latest record when the
+     * replica is too far behind, or has never followed this run of the primary. The snapshot is taken from
+     * a copy of the full list that is kept up to date by the records, as the full list itself is only ever
+     * touched by the main thread. Replicas receive records on a background thread, and the main thread
+     * applies them between commands, as in watch mode.
+     * ====================================================================================================
+     */
+
+    /**
+     * A numbered record of the changes a command made to the full list on the primary, or a snapshot of all
+     * persons on the primary as of a record.
+     */
+    private static final class ReplicationRecord {
+        final long sequenceNumber;
+        /** The time (in milliseconds) at which the primary committed the changes. */
+        final long commitMillis;
+        /** The changes, oldest first, or null if this is a snapshot. */
+        final ArrayList<ModelChange> changes;
+        /** All persons on the primary as of this record, or null if this is not a snapshot. */
+        final ArrayList<String[]> snapshot;
+
+        ReplicationRecord(long sequenceNumber, long commitMillis, ArrayList<ModelChange> changes,
+                          ArrayList<String[]> snapshot) {
+            this.sequenceNumber = sequenceNumber;
+            this.commitMillis = commitMillis;
+            this.changes = changes;
+            this.snapshot = snapshot;
+        }
+    }
+
+    /**
+     * True if this process is a replication primary.
+     */
+    private static boolean isReplicationPrimary = false;
+
+    /**
+     * Port that the replication primary serves replicas on.
+     */
+    private static int replicationPort;
+
+    /**
+     * Changes made to the full list since the latest replication record, oldest first. Only kept by a primary.
+     */
+    private static final ArrayList<ModelChange> CHANGES_TO_REPLICATE = new ArrayList<>();
+
+    /**
+     * The latest replication records of the primary, oldest first. Also the lock that guards the copy of the
+     * full list and the sequence number below, and that sender threads wait on for new records.
+     */
+    private static final ArrayDeque<ReplicationRecord> REPLICATION_LOG = new ArrayDeque<>();
+
+    /**
+     * Copy of the full list on the primary as of the latest replication record, to take snapshots from.
+     */
+    private static final ArrayList<String[]> REPLICATED_PERSONS = new ArrayList<>();
+
+    /**
+     * Sequence number of the latest replication record of the primary (0 before the first record).
+     */
+    private static long latestReplicationSequenceNumber = 0;
+
+    /**
+     * Identifies this run of the primary, as sequence numbers start again from 0 when the primary restarts.
+     * Random, so that a restarted primary cannot pick the id of an earlier run.
+     */
+    private static final long REPLICATION_LOG_ID = new SecureRandom().nextLong();
+
+    private static final AtomicInteger connectedReplicaCount = new AtomicInteger();
+
+    /**
+     * Address (HOST:PORT) of the primary that this process is a read-only replica of, or null if it is not
+     * a replica.
+     */
+    private static String replicationPrimaryAddress = null;
+
+    /**
+     * Replication records received from the primary by the receiver thread, waiting to be applied.
+     */
+    private static final ConcurrentLinkedQueue<ReplicationRecord> RECEIVED_REPLICATION_RECORDS =
+            new ConcurrentLinkedQueue<>();
+
+    /**
+     * Sequence number of the latest replication record that the main thread applied to the full list.
+     */
+    private static long appliedReplicationSequenceNumber = 0;
+
+    /**
+     * Time (in milliseconds) from the commit of the latest applied record on the primary to when it was
+     * applied, and the longest such time so far.
+     */
+    private static long latestReplicationLagMillis = 0;
+    private static long maxReplicationLagMillis = 0;
+
+    /**
+     * Sequence number of the latest record of the primary known to the receiver thread.
+     */
+    private static volatile long primaryLatestSequenceNumber = 0;
+
+    private static volatile boolean isConnectedToPrimary = false;
+
+    /**
+     * The latest content of the storage file decoded by the watcher thread, waiting to be applied.
+     */
+    private static final AtomicReference<WatchedContent> PENDING_WATCHED_CONTENT = new AtomicReference<>();
+
+    /**
+     * Content of the storage file decoded by the watcher thread, together with the size and modification
+     * time of the file it was decoded from.
+     */
+    private static final class WatchedContent {
+        final ArrayList<String[]> persons;
+        final long fileSize;
+        final long fileModifiedMillis;
+        final long fileChecksum;
+
+        WatchedContent(ArrayList<String[]> persons, long fileSize, long fileModifiedMillis, long fileChecksum) {
+            this.persons = persons;
+            this.fileSize = fileSize;
+            this.fileModifiedMillis = fileModifiedMillis;
+            this.fileChecksum = fileChecksum;
+        }
+    }
+
+    /*
+     * NOTE : =============================================================
+     * Notice how this method solves the whole problem at a very high level.
+     * We can understand the high-level logic of the program by reading this
+     * method alone.
+     * If the reader wants a deeper understanding of the solution, she can go
+     * to the next level of abstraction by reading the methods that are
+     * referenced by the high-level method below.
+     * ====================================================================
+     */
+
+    public static void main(String[] args) {
+        showWelcomeMessage();
+        processProgramArgs(args);
+        loadDataFromStorage();
+        startWatchingStorageFileIfEnabled();
+        startReplicationIfEnabled();
+        while (true) {
+            String userCommand = getUserInput();
+            echoUserCommand(userCommand);
+            String feedback = executeCommand(userCommand);
+            shipChangesToReplicas();
+            showResultToUser(feedback);
+        }
+    }
+
+    /*
+     * NOTE : =============================================================
+     * The method header comment can be omitted if the method is trivial
+     * and the header comment is going to be almost identical to the method
+     * signature anyway.
+     * ====================================================================
+     */
+
+    private static void showWelcomeMessage() {
+        showToUser(DIVIDER, DIVIDER, VERSION, MESSAGE_WELCOME, DIVIDER);
+    }
+
+    private static void showResultToUser(String result) {
+        showToUser(result, DIVIDER);
+    }
+
+    /*
+     * NOTE : =============================================================
+     * Parameter description can be omitted from the method header comment
+     * if the parameter name is self-explanatory.
+     * In the method below, '@param userInput' comment has been omitted.
+     * ====================================================================
+     */
+
+    /**
+     * Echoes the user input back to the user.
+     */
+    private static void echoUserCommand(String userCommand) {
+        showToUser("[Command entered:" + userCommand + "]");
+    }
+
+    /**
+     * Processes the program main method run arguments.
+     * If a valid storage file is specified, sets up that file for storage.
+     * Otherwise sets up the default file for storage.
+     *
+     * @param args full program arguments passed to application main method
+     */
+    private static void processProgramArgs(String[] args) {
+        if (args.length >= 2) {
+            showToUser(MESSAGE_INVALID_PROGRAM_ARGS);
+            exitProgram();
+        }
+
+        if (args.length == 1) {
+            setupGivenFileForStorage(args[0]);
+        }
+
+        if(args.length == 0) {
+            setupDefaultFileForStorage();
+        }
+    }
+
+    /**
+     * Sets up the storage file based on the supplied file path.
+     * Creates the file if it is missing.
+     * Exits if the file name is not acceptable.
+     */
+    private static void setupGivenFileForStorage(String filePath) {
+
+        if (!isValidFilePath(filePath)) {
+            showToUser(String.format(MESSAGE_INVALID_FILE, filePath));
+            exitProgram();
+        }
+
+        storageFilePath = filePath;
+        recoverInterruptedSave(filePath);
+        createFileIfMissing(filePath);
+    }
+
+    /**
+     * Displays the goodbye message and exits the runtime.
+     */
+    private static void exitProgram() {
+        showToUser(MESSAGE_GOODBYE, DIVIDER, DIVIDER);
+        System.exit(0);
+    }
+
+    /**
+     * Sets up the storage based on the default file.
+     * Creates file if missing.
+     * Exits program if the file cannot be created.
+     */
+    private static void setupDefaultFileForStorage() {
+        showToUser(MESSAGE_USING_DEFAULT_FILE);
+        storageFilePath = DEFAULT_STORAGE_FILEPATH;
+        recoverInterruptedSave(storageFilePath);
+        createFileIfMissing(storageFilePath);
+    }
+
+    /**
+     * Returns true if the given file path is valid.
+     * A file path is valid if it has a valid parent directory as determined by {@link #hasValidParentDirectory}
+     * and a valid file name as determined by {@link #hasValidFileName}.
+     */
+    private static boolean isValidFilePath(String filePath) {
+        if (filePath == null) {
+            return false;
+        }
+        Path filePathToValidate;
+        try {
+            filePathToValidate = Paths.get(filePath);
+        } catch (InvalidPathException ipe) {
+            return false;
+        }
+        return hasValidParentDirectory(filePathToValidate) && hasValidFileName(filePathToValidate);
+    }
+
+    /**
+     * Returns true if the file path has a parent directory that exists.
+     */
+    private static boolean hasValidParentDirectory(Path filePath) {
+        Path parentDirectory = filePath.getParent();
+        return parentDirectory == null || Files.isDirectory(parentDirectory);
+    }
+
+    /**
+     * Returns true if file path has a valid file name.
+     * File name is valid if it has an extension and no reserved characters.
+     * Reserved characters are OS-dependent.
+     * If a file already exists, it must be a regular file.
+     */
+    private static boolean hasValidFileName(Path filePath) {
+        return filePath.getFileName().toString().lastIndexOf('.') > 0
+                && (!Files.exists(filePath) || Files.isRegularFile(filePath));
+    }
+
+    /**
+     * Initialises the in-memory data using the storage file, or opens the storage file as a paged store.
+     * Assumption: The file exists.
+     */
+    private static void loadDataFromStorage() {
+        if (isPagedStoreEnabled()) {
+            openPagedStore(storageFilePath);
+            return;
+        }
+        lockStorage();
+        initialiseAddressBookModel(loadPersonsFromFile(storageFilePath));
+        rememberStorageVersion(readStorageVersion());
+        loadSortedIndexesFromFile();
+        unlockStorage();
+    }
+
+
+    /*
+     * ===========================================
+     *           COMMAND LOGIC
+     * ===========================================
+     */
+
+    /**
+     * Executes the command as specified by the {@code userInputString}
+     *
+     * @param userInputString  raw input from user
+     * @return  feedback about how the command was executed
      */
     private static String executeCommand(String userInputString) {
-        final String[] commandTypeAndParams = splitCommandWordAndArgs(userInputString);
-        final String commandType = commandTypeAndParams[0];
-        final String commandArgs = commandTypeAndParams[1];
+        addLatestCommandToUndoHistory();
+        applyWatchedChangesToModel();
+        applyReplicatedChangesToModel();
+        final String commandType = extractCommandWord(userInputString);
+        final String commandArgs = extractCommandArgs(userInputString);
+        if (replicationPrimaryAddress != null && isChangingCommand(commandType)) {
+            return String.format(MESSAGE_READ_ONLY_REPLICA, replicationPrimaryAddress);
+        }
+        if (isPagedStoreOpen() && isHistoryCommand(commandType)) {
+            return String.format(MESSAGE_NOT_SUPPORTED_BY_PAGED_STORE, commandType);
+        }
+        try {
+            return executeCommandOfType(commandType, commandArgs);
+        } catch (UncheckedIOException uioe) { // only thrown by the paged store
+            showToUser(String.format(MESSAGE_ERROR_PAGED_STORE, storageFilePath, uioe.getCause().getMessage()));
+            exitProgram();
+            return null;
+        }
+    }
+
+    /**
+     * Executes a command of the given type.
+     *
+     * @param commandType command word the user entered
+     * @param commandArgs full command args string from the user
+     * @return feedback about how the command was executed
+     */
+    private static String executeCommandOfType(String commandType, String commandArgs) {
         switch (commandType) {
         case COMMAND_ADD_WORD:
             return executeAddPerson(commandArgs);
+        case COMMAND_IMPORT_WORD:
+            return executeImportPersons(commandArgs);
+        case COMMAND_EXPORT_WORD:
+            return executeExportPersons(commandArgs);
         case COMMAND_FIND_WORD:
             return executeFindPersons(commandArgs);
         case COMMAND_LIST_WORD:
-            return executeListAllPersonsInAddressBook();
+            return executeListAllPersonsInAddressBook(commandArgs);
+        case COMMAND_NEXT_WORD:
+            return executeShowAdjacentPage(1);
+        case COMMAND_PREV_WORD:
+            return executeShowAdjacentPage(-1);
         case COMMAND_DELETE_WORD:
             return executeDeletePerson(commandArgs);
+        case COMMAND_DELETE_MATCHING_WORD:
+            return executeDeletePersonsMatching(commandArgs);
         case COMMAND_CLEAR_WORD:
             return executeClearAddressBook();
+        case COMMAND_UNDO_WORD:
+            return executeUndoChange();
+        case COMMAND_REDO_WORD:
+            return executeRedoChange();
+        case COMMAND_BEGIN_WORD:
+            return executeBeginTransaction();
+        case COMMAND_COMMIT_WORD:
+            return executeCommitTransaction();
+        case COMMAND_ROLLBACK_WORD:
+            return executeRollbackTransaction();
+        case COMMAND_STATS_WORD:
+            return executeShowStatistics();
         case COMMAND_HELP_WORD:
             return getUsageInfoForAllCommands();
         case COMMAND_EXIT_WORD:
             executeExitProgramRequest();
         default:
-            return getMessageForInvalidCommandInput(commandType, getUsageInfoForAllCommands());
+            return getMessageForInvalidCommandInput(commandType, getUsageInfoForAllCommands());
+        }
+    }
+
+    /**
+     * Returns true if the command changes the address book (or may do so), and hence cannot run on a replica.
+     */
+    private static boolean isChangingCommand(String commandType) {
+        switch (commandType) {
+        case COMMAND_ADD_WORD:
+        case COMMAND_IMPORT_WORD:
+        case COMMAND_DELETE_WORD:
+        case COMMAND_DELETE_MATCHING_WORD:
+        case COMMAND_CLEAR_WORD:
+        case COMMAND_UNDO_WORD:
+        case COMMAND_REDO_WORD:
+        case COMMAND_BEGIN_WORD:
+        case COMMAND_COMMIT_WORD:
+        case COMMAND_ROLLBACK_WORD:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Returns true if the command undoes changes or groups them into a transaction. Such commands are not
+     * supported by the paged store, which only adds persons at the end.
+     */
+    private static boolean isHistoryCommand(String commandType) {
+        switch (commandType) {
+        case COMMAND_UNDO_WORD:
+        case COMMAND_REDO_WORD:
+        case COMMAND_BEGIN_WORD:
+        case COMMAND_COMMIT_WORD:
+        case COMMAND_ROLLBACK_WORD:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /*
+     * NOTE : =============================================================
+     * The methods below scan the user input by hand instead of splitting it
+     * with a regular expression, as every command goes through them. For
+     * a known command word, no new string is created at all.
+     * ====================================================================
+     */
+
+    /**
+     * Extracts the command word (the first word) from raw user input.
+     *
+     * @return  the matching constant in {@link #COMMAND_WORDS}, or a copy of the word if it is not a command word
+     */
+    private static String extractCommandWord(String rawUserInput) {
+        final int wordStart = skipWhitespace(rawUserInput, 0);
+        final int wordEnd = skipNonWhitespace(rawUserInput, wordStart);
+        final int wordLength = wordEnd - wordStart;
+        for (String commandWord : COMMAND_WORDS) {
+            if (commandWord.length() == wordLength
+                    && rawUserInput.regionMatches(wordStart, commandWord, 0, wordLength)) {
+                return commandWord;
+            }
+        }
+        return rawUserInput.substring(wordStart, wordEnd);
+    }
+
+    /**
+     * Extracts the command arguments (everything after the command word, without surrounding whitespace)
+     * from raw user input.
+     *
+     * @return  the arguments, or an empty string if there are none
+     */
+    private static String extractCommandArgs(String rawUserInput) {
+        final int wordEnd = skipNonWhitespace(rawUserInput, skipWhitespace(rawUserInput, 0));
+        final int argsStart = skipWhitespace(rawUserInput, wordEnd);
+        int argsEnd = rawUserInput.length();
+        while (argsEnd > argsStart && isWhitespace(rawUserInput.charAt(argsEnd - 1))) {
+            argsEnd--;
+        }
+        return argsStart == argsEnd ? "" : rawUserInput.substring(argsStart, argsEnd);
+    }
+
+    /**
+     * Returns the position of the first non-whitespace character at or after {@code from},
+     * or the length of the string if there is none.
+     */
+    private static int skipWhitespace(String s, int from) {
+        int position = from;
+        while (position < s.length() && isWhitespace(s.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Returns the position of the first whitespace character at or after {@code from},
+     * or the length of the string if there is none.
+     */
+    private static int skipNonWhitespace(String s, int from) {
+        int position = from;
+        while (position < s.length() && !isWhitespace(s.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Returns true if the character is whitespace, in the same sense as {@link String#trim()}.
+     */
+    private static boolean isWhitespace(char c) {
+        return c <= ' ';
+    }
+
+    /**
+     * Constructs a generic feedback message for an invalid command from user, with instructions for correct usage.
+     *
+     * @param correctUsageInfo message showing the correct usage
+     * @return invalid command args feedback message
+     */
+    private static String getMessageForInvalidCommandInput(String userCommand, String correctUsageInfo) {
+        return String.format(MESSAGE_INVALID_COMMAND_FORMAT, userCommand, correctUsageInfo);
+    }
+
+    /**
+     * Adds a person (specified by the command args) to the address book.
+     * The entire command arguments string is treated as a string representation of the person to add.
+     *
+     * @param commandArgs full command args string from the user
+     * @return feedback display message for the operation result
+     */
+    private static String executeAddPerson(String commandArgs) {
+        // try decoding a person from the raw args
+        final Optional<String[]> decodeResult = decodePersonFromString(commandArgs);
+
+        // checks if args are valid (decode result will not be present if the person is invalid)
+        if (!decodeResult.isPresent()) {
+            return getMessageForInvalidCommandInput(COMMAND_ADD_WORD, getUsageInfoForAddCommand());
+        }
+
+        // add the person as specified
+        final String[] personToAdd = decodeResult.get();
+        addPersonToAddressBook(personToAdd);
+        return getMessageForSuccessfulAddPerson(personToAdd);
+    }
+
+    /**
+     * Constructs a feedback message for a successful add person command execution.
+     *
+     * @see #executeAddPerson(String)
+     * @param addedPerson person who was successfully added
+     * @return successful add person feedback message
+     */
+    private static String getMessageForSuccessfulAddPerson(String[] addedPerson) {
+        return String.format(MESSAGE_ADDED,
+                getNameFromPerson(addedPerson), getPhoneFromPerson(addedPerson), getEmailFromPerson(addedPerson));
+    }
+
+    /**
+     * Adds all persons in a file to the address book, and saves the address book once. With the paged store,
+     * each batch of lines is added before the next is read, and the batches added are dropped if the file
+     * cannot be read to the end, so that nothing is imported then, as without the paged store.
+     * Lines are read in batches, and the lines of a batch are decoded and validated in parallel. Lines that are
+     * not valid persons are rejected and reported, together with the reason for rejecting them.
+     *
+     * @param commandArgs full command args string from the user
+     * @return feedback display message for the operation result
+     */
+    private static String executeImportPersons(String commandArgs) {
+        final String filePath = commandArgs.trim();
+        if (filePath.isEmpty()) {
+            return getMessageForInvalidCommandInput(COMMAND_IMPORT_WORD, getUsageInfoForImportCommand());
+        }
+        final boolean isCsv = filePath.toLowerCase().endsWith(IMPORT_CSV_FILE_EXTENSION);
+        final ArrayList<String> lines = new ArrayList<>();
+        final ArrayList<String[]> accepted = new ArrayList<>(); // not added yet
+        int acceptedCount = 0;
+        int rejectedCount = 0;
+        int lineCount = 0;
+        long elapsedNanos = 1;
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(filePath))) {
+            while (true) {
+                lines.clear();
+                for (String line; lines.size() < IMPORT_BATCH_SIZE && (line = reader.readLine()) != null; ) {
+                    lines.add(line);
+                }
+                if (lines.isEmpty()) {
+                    break;
+                }
+                final String[] rejectReasons = new String[lines.size()];
+                final long startNanos = System.nanoTime();
+                final String[][] decodedPersons = decodeImportedLines(lines, isCsv, rejectReasons);
+                elapsedNanos += System.nanoTime() - startNanos;
+                for (int i = 0; i < lines.size(); i++) {
+                    final int lineIndex = lineCount + i;
+                    if (decodedPersons[i] != null) {
+                        accepted.add(decodedPersons[i]);
+                    } else if (isImportedLineToBeReported(lines.get(i), lineIndex, isCsv)) {
+                        if (rejectedCount < IMPORT_MAX_REJECTED_LINES_SHOWN) {
+                            showToUser(String.format(MESSAGE_IMPORT_LINE_REJECTED,
+                                    lineIndex + 1, rejectReasons[i], lines.get(i)));
+                        }
+                        rejectedCount++;
+                    }
+                }
+                lineCount += lines.size();
+                if (isPagedStoreOpen()) {
+                    acceptedCount += accepted.size();
+                    appendPersonsToPagedStore(accepted);
+                    accepted.clear();
+                }
+            }
+        } catch (IOException | InvalidPathException e) {
+            if (isPagedStoreOpen() && acceptedCount > 0) {
+                rollbackPagedStore();
+            }
+            return String.format(MESSAGE_ERROR_READING_FROM_FILE, filePath);
+        }
+        if (rejectedCount > IMPORT_MAX_REJECTED_LINES_SHOWN) {
+            showToUser(String.format(MESSAGE_IMPORT_MORE_LINES_REJECTED,
+                    rejectedCount - IMPORT_MAX_REJECTED_LINES_SHOWN));
+        }
+        if (isPagedStoreOpen()) {
+            savePagedStore();
+        } else {
+            acceptedCount = accepted.size();
+            addPersonsToAddressBook(accepted);
+        }
+        return String.format(MESSAGE_IMPORTED, acceptedCount, filePath, rejectedCount, lineCount,
+                elapsedNanos / 1_000_000, lineCount * 1_000_000_000L / elapsedNanos);
+    }
+
+    /**
+     * Decodes and validates lines of an imported file in parallel.
+     *
+     * @param rejectReasons set to the reason each line that is not a valid person was rejected for
+     * @return the person decoded from each line, or null for lines that are not valid persons
+     */
+    private static String[][] decodeImportedLines(List<String> lines, boolean isCsv, String[] rejectReasons) {
+        final String[][] decodedPersons = new String[lines.size()][];
+        IntStream.range(0, lines.size()).parallel().forEach(i -> {
+            final String line = lines.get(i);
+            final Optional<String[]> person = isCsv ? decodePersonFromCsvLine(line) : decodeImportedPerson(line);
+            if (person.isPresent()) {
+                final Optional<String> invalidReason = getReasonPersonDataIsInvalid(person.get());
+                rejectReasons[i] = invalidReason.orElse(null);
+                decodedPersons[i] = invalidReason.isPresent() ? null : person.get();
+            } else {
+                rejectReasons[i] = isCsv ? "expected NAME,PHONE,EMAIL" : "expected " + COMMAND_ADD_PARAMETERS;
+            }
+        });
+        return decodedPersons;
+    }
+
+    /**
+     * Decodes a person from a line of an imported file in the storage file format.
+     * Unlike a storage file line, the person data is not validated.
+     */
+    private static Optional<String[]> decodeImportedPerson(String line) {
+        if (!isPersonDataExtractableFrom(line)) {
+            return Optional.empty();
+        }
+        return Optional.of(makePersonFromData(
+                extractNameFromPersonString(line),
+                extractPhoneFromPersonString(line),
+                extractEmailFromPersonString(line)));
+    }
+
+    /**
+     * Decodes a person from a line of an imported CSV file, in the format NAME,PHONE,EMAIL.
+     * Fields may be surrounded by whitespace and double quotes. The person data is not validated.
+     *
+     * @see #splitCsvLine(String)
+     * @return if the line does not have exactly 3 fields: empty Optional
+     *         else: Optional containing decoded person
+     */
+    private static Optional<String[]> decodePersonFromCsvLine(String line) {
+        final ArrayList<String> fields = splitCsvLine(line);
+        if (fields == null || fields.size() != PERSON_DATA_COUNT) {
+            return Optional.empty();
+        }
+        return Optional.of(makePersonFromData(fields.get(0), fields.get(1), fields.get(2)));
+    }
+
+    /**
+     * Splits a line of a CSV file into its fields, with surrounding whitespace removed. A field in double quotes
+     * may contain separators, and a double quote written twice (as {@link #quoteCsvField} writes it).
+     *
+     * @return the fields, or null if a quoted field is not closed, or is followed by more than whitespace
+     */
+    private static ArrayList<String> splitCsvLine(String line) {
+        final ArrayList<String> fields = new ArrayList<>();
+        final StringBuilder quotedField = new StringBuilder();
+        int index = 0;
+        while (true) {
+            while (index < line.length() && Character.isWhitespace(line.charAt(index))) {
+                index++;
+            }
+            if (index < line.length() && line.charAt(index) == '"') {
+                quotedField.setLength(0);
+                index++;
+                while (true) {
+                    if (index == line.length()) {
+                        return null;
+                    }
+                    final char c = line.charAt(index++);
+                    if (c != '"') {
+                        quotedField.append(c);
+                    } else if (index < line.length() && line.charAt(index) == '"') {
+                        quotedField.append('"');
+                        index++;
+                    } else {
+                        break;
+                    }
+                }
+                fields.add(quotedField.toString().trim());
+                while (index < line.length() && Character.isWhitespace(line.charAt(index))) {
+                    index++;
+                }
+                if (index < line.length() && line.charAt(index) != CSV_SEPARATOR) {
+                    return null;
+                }
+            } else {
+                final int separator = line.indexOf(CSV_SEPARATOR, index);
+                final int end = separator < 0 ? line.length() : separator;
+                fields.add(line.substring(index, end).trim());
+                index = end;
+            }
+            if (index == line.length()) {
+                return fields;
+            }
+            index++; // past the separator
+        }
+    }
+
+    /**
+     * Returns true if a line of an imported file that was not accepted should be reported as rejected.
+     * Blank lines, and the header line of a CSV file, are skipped silently.
+     *
+     * @param lineIndex position of the line in the file, starting from 0
+     */
+    private static boolean isImportedLineToBeReported(String line, int lineIndex, boolean isCsv) {
+        final boolean isCsvHeader = isCsv && lineIndex == 0
+                && line.replaceAll("\\s", "").equalsIgnoreCase(IMPORT_CSV_HEADER);
+        return !line.trim().isEmpty() && !isCsvHeader;
+    }
+
+    /**
+     * Writes all persons in the address book, or the persons in the latest listing, to a file.
+     * Exporting all persons in the storage file format copies the storage file as it is.
+     *
+     * @param commandArgs full command args string from the user
+     * @return feedback display message for the operation result
+     */
+    private static String executeExportPersons(String commandArgs) {
+        final ArrayList<String> args = splitByWhitespace(commandArgs);
+        final boolean isListingExported = args.remove(COMMAND_EXPORT_OPTION_LISTING);
+        final String format = args.size() == 2 ? args.get(1) : COMMAND_EXPORT_FORMAT_TXT;
+        final boolean isFormatValid = format.equals(COMMAND_EXPORT_FORMAT_TXT)
+                || format.equals(COMMAND_EXPORT_FORMAT_CSV) || format.equals(COMMAND_EXPORT_FORMAT_JSON);
+        if (args.isEmpty() || args.get(0).isEmpty() || args.size() > 2 || !isFormatValid) {
+            return getMessageForInvalidCommandInput(COMMAND_EXPORT_WORD, getUsageInfoForExportCommand());
+        }
+        final String filePath = args.get(0);
+        try {
+            // opening the export file truncates it, which must never happen to the storage file outside a save
+            final Path exportPath = Paths.get(filePath);
+            if (Files.exists(exportPath) && Files.isSameFile(exportPath, Paths.get(storageFilePath))) {
+                return String.format(MESSAGE_EXPORT_TO_STORAGE_FILE, filePath);
+            }
+        } catch (IOException | InvalidPathException e) {
+            return String.format(MESSAGE_ERROR_WRITING_TO_FILE, filePath);
+        }
+        final int exportedCount = isListingExported ? getLatestListingSize() : getPersonCount();
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (format.equals(COMMAND_EXPORT_FORMAT_TXT) && !isListingExported && copyStorageFileTo(channel)) {
+                return String.format(MESSAGE_EXPORTED, exportedCount, filePath, format);
+            }
+            FILE_OUTPUT_BUFFER.clear();
+            FILE_OUTPUT_ENCODER.reset();
+            writeExportHeader(channel, format);
+            final boolean isInModelOrder = !isListingExported || isLatestListingInModelOrder();
+            final Iterator<String[]> persons = isInModelOrder ? getPersonIterator(0, exportedCount) : null;
+            for (int i = 0; i < exportedCount; i++) {
+                final String[] person = isInModelOrder ? persons.next() : getPersonInLatestListing(i);
+                writeToFileChannel(channel, encodePersonForExport(person, format, i == 0));
+            }
+            writeExportFooter(channel, format);
+            flushFileOutputBuffer(channel);
+        } catch (IOException | InvalidPathException e) {
+            return String.format(MESSAGE_ERROR_WRITING_TO_FILE, filePath);
+        }
+        return String.format(MESSAGE_EXPORTED, exportedCount, filePath, format);
+    }
+
+    /**
+     * Copies the storage file to the channel, within the file system where possible, if the storage file holds
+     * exactly the persons in the model.
+     *
+     * @return true if the storage file was copied; false if it was not up to date with the model
+     */
+    private static boolean copyStorageFileTo(FileChannel target) throws IOException {
+        if (isInTransaction) {
+            return false; // changes in the transaction are not in the storage file yet
+        }
+        if (isPagedStoreOpen()) {
+            return false; // the paged store is not in the storage file format
+        }
+        lockStorage();
+        try (FileChannel source = FileChannel.open(Paths.get(storageFilePath), StandardOpenOption.READ)) {
+            if (isStorageChangedExternally(readStorageVersion())) {
+                return false;
+            }
+            long copied = 0;
+            final long size = source.size();
+            while (copied < size) {
+                copied += source.transferTo(copied, size - copied, target);
+            }
+            return true;
+        } finally {
+            unlockStorage();
+        }
+    }
+
+    private static void writeExportHeader(FileChannel channel, String format) throws IOException {
+        if (format.equals(COMMAND_EXPORT_FORMAT_CSV)) {
+            writeToFileChannel(channel, IMPORT_CSV_HEADER + System.lineSeparator());
+        } else if (format.equals(COMMAND_EXPORT_FORMAT_JSON)) {
+            writeToFileChannel(channel, "[");
+        }
+    }
+
+    private static void writeExportFooter(FileChannel channel, String format) throws IOException {
+        if (format.equals(COMMAND_EXPORT_FORMAT_JSON)) {
+            writeToFileChannel(channel, System.lineSeparator() + "]" + System.lineSeparator());
+        }
+    }
+
+    /**
+     * Encodes a person as a line (or a JSON array element) of an export file in the given format.
+     *
+     * @param isFirst true if this is the first person exported; JSON array elements after it start with a comma
+     */
+    private static String encodePersonForExport(String[] person, String format, boolean isFirst) {
+        switch (format) {
+        case COMMAND_EXPORT_FORMAT_CSV:
+            return quoteCsvField(getNameFromPerson(person)) + CSV_SEPARATOR
+                    + quoteCsvField(getPhoneFromPerson(person)) + CSV_SEPARATOR
+                    + quoteCsvField(getEmailFromPerson(person)) + System.lineSeparator();
+        case COMMAND_EXPORT_FORMAT_JSON:
+            return (isFirst ? "" : ",") + System.lineSeparator()
+                    + "  {\"name\": " + quoteJsonString(getNameFromPerson(person))
+                    + ", \"phone\": " + quoteJsonString(getPhoneFromPerson(person))
+                    + ", \"email\": " + quoteJsonString(getEmailFromPerson(person)) + "}";
+        default:
+            return encodePersonToString(person) + System.lineSeparator();
+        }
+    }
+
+    private static String quoteCsvField(String field) {
+        if (field.indexOf(CSV_SEPARATOR) < 0 && field.indexOf('"') < 0) {
+            return field;
+        }
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+
+    private static String quoteJsonString(String value) {
+        final StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < ' ') {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Encodes the text into the file output buffer, writing the buffer to the channel whenever it fills up.
+     */
+    private static void writeToFileChannel(FileChannel channel, CharSequence text) throws IOException {
+        final CharBuffer chars = CharBuffer.wrap(text);
+        CoderResult result = FILE_OUTPUT_ENCODER.encode(chars, FILE_OUTPUT_BUFFER, false);
+        while (result.isOverflow()) {
+            flushFileOutputBuffer(channel);
+            result = FILE_OUTPUT_ENCODER.encode(chars, FILE_OUTPUT_BUFFER, false);
+        }
+    }
+
+    private static void flushFileOutputBuffer(FileChannel channel) throws IOException {
+        FILE_OUTPUT_BUFFER.flip();
+        FILE_OUTPUT_CHECKSUM.update(FILE_OUTPUT_BUFFER);
+        FILE_OUTPUT_BUFFER.rewind();
+        while (FILE_OUTPUT_BUFFER.hasRemaining()) {
+            channel.write(FILE_OUTPUT_BUFFER);
+        }
+        FILE_OUTPUT_BUFFER.clear();
+    }
+
+    /**
+     * Finds and lists all persons in address book whose name contains any of the argument keywords.
+     * Keyword matching is case sensitive.
+     *
+     * @param commandArgs full command args string from the user
+     * @return feedback display message for the operation result
+     */
+    private static String executeFindPersons(String commandArgs) {
+        if (commandArgs.trim().startsWith(COMMAND_FIND_OPTION_TOP)) {
+            return executeFindTopPersons(commandArgs);
+        }
+        if (commandArgs.trim().startsWith(COMMAND_FIND_OPTION_CONTAINS)) {
+            return executeFindPersonsContainingText(commandArgs);
+        }
+        final Set<String> keywords = extractKeywordsFromFindPersonArgs(commandArgs);
+        final FindResult result = getFindResult(keywords);
+        updateLatestViewedPersonListing(result.positions);
+        if (result.renderedRows == null) {
+            showLatestListingToUser();
+        } else {
+            showRenderedListingToUser(result.renderedRows);
+        }
+        return getMessageForPersonsDisplayedSummary(latestListingSize);
+    }
+
+    /**
+     * Finds the persons whose names best match the keywords, and displays only the best of them, best first.
+     *
+     * @param commandArgs full command args string from the user, starting with the top option
+     * @return feedback display message for the operation result
+     */
+    private static String executeFindTopPersons(String commandArgs) {
+        final ArrayList<String> words = splitByWhitespace(commandArgs.trim());
+        if (words.size() < 3 || !words.get(0).equals(COMMAND_FIND_OPTION_TOP) || !isPositiveInteger(words.get(1))) {
+            return getMessageForInvalidCommandInput(COMMAND_FIND_WORD, getUsageInfoForFindCommand());
+        }
+        final int maxShown = Integer.parseInt(words.get(1));
+        final Set<String> keywords = new HashSet<>(words.subList(2, words.size()));
+        final int[] matchCount = new int[1];
+        updateLatestViewedPersonListing(getPositionsOfBestMatchingPersons(keywords, maxShown, matchCount));
+        showLatestListingToUser();
+        return String.format(MESSAGE_TOP_PERSONS_FOUND_OVERVIEW, matchCount[0], latestListingSize);
+    }
+
+    /**
+     * Finds and lists all persons whose names contain the text anywhere, even inside a word.
+     * Matching is case sensitive.
+     *
+     * @param commandArgs full command args string from the user, starting with the contains option
+     * @return feedback display message for the operation result
+     */
+    private static String executeFindPersonsContainingText(String commandArgs) {
+        final String args = commandArgs.trim();
+        final String text = args.substring(COMMAND_FIND_OPTION_CONTAINS.length()).trim();
+        if (text.isEmpty() || !Character.isWhitespace(args.charAt(COMMAND_FIND_OPTION_CONTAINS.length()))) {
+            return getMessageForInvalidCommandInput(COMMAND_FIND_WORD, getUsageInfoForFindCommand());
+        }
+        updateLatestViewedPersonListing(getPositionsOfPersonsWithNameContainingText(text));
+        showLatestListingToUser();
+        return getMessageForPersonsDisplayedSummary(latestListingSize);
+    }
+
+    /**
+     * Retrieves the positions of the persons in the full model whose names best match the keywords, best first.
+     * Only the best persons seen so far are kept while scanning, so memory used does not grow with the number
+     * of persons matching. Persons with the same score are ordered by their position in the full model.
+     *
+     * @see #getNameMatchScore(String, Set)
+     * @param keywords for searching
+     * @param maxCount maximum number of positions to retrieve
+     * @param matchCount size 1 array; its element is set to the number of persons matching any keyword
+     * @return positions in full model of at most {@code maxCount} best matching persons, best first
+     */
+    private static int[] getPositionsOfBestMatchingPersons(Set<String> keywords, int maxCount, int[] matchCount) {
+        final int personCount = getPersonCount();
+        final Iterator<String[]> persons = getPersonIterator(0, personCount);
+        // each element is {score, position}; the worst of the best persons kept is at the head of the queue
+        final PriorityQueue<int[]> best = new PriorityQueue<>(Math.min(maxCount, personCount) + 1,
+                (a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(b[1], a[1]));
+        matchCount[0] = 0;
+        for (int position = 0; position < personCount; position++) {
+            final int score = getNameMatchScore(getNameFromPerson(persons.next()), keywords);
+            if (score == 0) {
+                continue;
+            }
+            matchCount[0]++;
+            if (best.size() < maxCount) {
+                best.add(new int[] { score, position });
+            } else if (score > best.peek()[0]) { // a later person with the same score ranks lower
+                best.poll();
+                best.add(new int[] { score, position });
+            }
+        }
+        final int[] positions = new int[best.size()];
+        for (int i = positions.length - 1; i >= 0; i--) {
+            positions[i] = best.poll()[1];
+        }
+        return positions;
+    }
+
+    /**
+     * Scores how well a name matches the keywords: each keyword adds 2 if it is a word in the name, or 1 if
+     * a word in the name starts with it. Matching is case sensitive.
+     *
+     * @return the score, or 0 if no keyword matches
+     */
+    private static int getNameMatchScore(String name, Set<String> keywords) {
+        final ArrayList<String> wordsInName = splitByWhitespace(name);
+        int score = 0;
+        for (String keyword : keywords) {
+            int keywordScore = 0;
+            for (String word : wordsInName) {
+                if (word.equals(keyword)) {
+                    keywordScore = 2;
+                    break;
+                }
+                if (word.startsWith(keyword)) {
+                    keywordScore = 1;
+                }
+            }
+            score += keywordScore;
+        }
+        return score;
+    }
+
+    /**
+     * Returns the result of finding persons whose names contain any of the keywords, reusing a cached result
+     * if the same keywords were searched for since the full list last changed.
+     *
+     * @param keywords for searching
+     */
+    private static FindResult getFindResult(Set<String> keywords) {
+        final String cacheKey = String.join(" ", new TreeSet<>(keywords));
+        final FindResult cached = FIND_RESULT_CACHE.get(cacheKey);
+        if (cached != null && cached.modelVersion == modelVersion) {
+            findCacheHitCount++;
+            return cached;
+        }
+        findCacheMissCount++;
+        final int[] positions = getPositionsOfPersonsWithNameContainingAnyKeyword(keywords);
+        final String renderedRows = positions.length <= FIND_CACHE_MAX_RENDERED_PERSONS
+                ? renderPersonListingRows(positions)
+                : null;
+        final FindResult result = new FindResult(modelVersion, positions, renderedRows);
+        if (cached != null) {
+            FIND_RESULT_CACHE.remove(cacheKey);
+            findCachePositionCount -= cached.positions.length;
+        }
+        if (positions.length <= FIND_CACHE_MAX_POSITIONS) {
+            FIND_RESULT_CACHE.put(cacheKey, result);
+            findCachePositionCount += positions.length;
+        }
+        final int cacheSize = getFindCacheSize();
+        for (Iterator<FindResult> leastRecentlyUsed = FIND_RESULT_CACHE.values().iterator();
+                FIND_RESULT_CACHE.size() > cacheSize || findCachePositionCount > FIND_CACHE_MAX_POSITIONS; ) {
+            findCachePositionCount -= leastRecentlyUsed.next().positions.length;
+            leastRecentlyUsed.remove();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the maximum number of results kept in the find result cache, chosen through the
+     * {@link #FIND_CACHE_SIZE_PROPERTY} system property.
+     */
+    private static int getFindCacheSize() {
+        try {
+            return Math.max(0, Integer.parseInt(System.getProperty(FIND_CACHE_SIZE_PROPERTY, "").trim()));
+        } catch (NumberFormatException nfe) {
+            return DEFAULT_FIND_CACHE_SIZE;
+        }
+    }
+
+    /**
+     * Constructs a feedback message to summarise an operation that displayed a listing of persons.
+     *
+     * @param personsDisplayedCount used to generate summary
+     * @return summary message for persons displayed
+     */
+    private static String getMessageForPersonsDisplayedSummary(int personsDisplayedCount) {
+        return String.format(MESSAGE_PERSONS_FOUND_OVERVIEW, personsDisplayedCount);
+    }
+
+    /**
+     * Extracts keywords from the command arguments given for the find persons command.
+     *
+     * @param findPersonCommandArgs full command args string for the find persons command
+     * @return set of keywords as specified by args
+     */
+    private static Set<String> extractKeywordsFromFindPersonArgs(String findPersonCommandArgs) {
+        return new HashSet<>(splitByWhitespace(findPersonCommandArgs.trim()));
+    }
+
+    /**
+     * Retrieves the positions of all persons in the full model whose names contain some of the specified keywords.
+     *
+     * @param keywords for searching
+     * @return ascending positions in full model of persons with name containing some of the keywords
+     */
+    private static int[] getPositionsOfPersonsWithNameContainingAnyKeyword(Collection<String> keywords) {
+        final int personCount = getPersonCount();
+        final Iterator<String[]> persons = getPersonIterator(0, personCount);
+        int[] matchedPositions = new int[0];
+        int matchedCount = 0;
+        for (int position = 0; position < personCount; position++) {
+            final String name = getNameFromPerson(persons.next());
+            final Set<String> wordsInName = new HashSet<>(splitByWhitespace(name));
+            if (!Collections.disjoint(wordsInName, keywords)) {
+                if (matchedCount == matchedPositions.length) {
+                    matchedPositions = Arrays.copyOf(matchedPositions, Math.max(16, matchedCount * 2));
+                }
+                matchedPositions[matchedCount++] = position;
+            }
+        }
+        return Arrays.copyOf(matchedPositions, matchedCount);
+    }
+
+    /**
+     * Retrieves the positions of all persons in the full model whose names contain the text, by scanning the
+     * packed names for candidate places and comparing the text with the bytes at each.
+     *
+     * @param text to search for; not empty
+     * @return ascending positions in full model of persons with name containing the text
+     */
+    private static int[] getPositionsOfPersonsWithNameContainingText(String text) {
+        if (isPagedStoreOpen()) {
+            return getPositionsOfPagedPersonsWithNameContainingText(text);
+        }
+        packNamesIfChanged();
+        final byte[] names = packedNames;
+        final int[] offsets = packedNameOffsets;
+        final int length = offsets[packedNameCount];
+        final byte[] pattern = text.getBytes(StandardCharsets.UTF_8);
+        final int lastMatchStart = length - pattern.length;
+        final IntUnaryOperator nextCandidate = makePackedNamesScanner(names, length, pattern);
+        int[] matchedPositions = new int[0];
+        int matchedCount = 0;
+        int position = 0; // of the person whose name holds the candidate
+        int start = nextCandidate.applyAsInt(0);
+        while (start <= lastMatchStart) {
+            while (offsets[position + 1] <= start) {
+                position++;
+            }
+            if (start + pattern.length <= offsets[position + 1] && isPatternAt(names, start, pattern)) {
+                if (matchedCount == matchedPositions.length) {
+                    matchedPositions = Arrays.copyOf(matchedPositions, Math.max(16, matchedCount * 2));
+                }
+                matchedPositions[matchedCount++] = position;
+                position++;
+                start = nextCandidate.applyAsInt(offsets[position]); // the rest of the name need not be scanned
+            } else {
+                start = nextCandidate.applyAsInt(start + 1);
+            }
+        }
+        return Arrays.copyOf(matchedPositions, matchedCount);
+    }
+
+    /**
+     * Returns a function that, given an index in the packed names, returns the first index from there on where
+     * the text may start (holding its first byte, and its last byte as far ahead as the text is long), or the
+     * length of the packed names if there is none. Uses the Vector API if it is available.
+     *
+     * @param length number of bytes of packed names at the start of the array
+     * @param pattern the text to search for, UTF-8 encoded
+     */
+    private static IntUnaryOperator makePackedNamesScanner(byte[] names, int length, byte[] pattern) {
+        if (VECTOR_NAME_SCANNER_CONSTRUCTOR != null) {
+            try {
+                return (IntUnaryOperator) VECTOR_NAME_SCANNER_CONSTRUCTOR.newInstance(names, length, pattern);
+            } catch (ReflectiveOperationException roe) {
+                // scan 8 bytes at a time instead
+            }
+        }
+        final int lastIndexInPattern = pattern.length - 1;
+        final long firstByteInEachByte = (pattern[0] & 0xFFL) * LOW_BIT_OF_EACH_BYTE;
+        final long lastByteInEachByte = (pattern[lastIndexInPattern] & 0xFFL) * LOW_BIT_OF_EACH_BYTE;
+        return from -> {
+            int start = from;
+            for (; start + lastIndexInPattern + Long.BYTES <= length; start += Long.BYTES) {
+                final long firstDifferences = (long) PACKED_NAMES_AS_LONGS.get(names, start) ^ firstByteInEachByte;
+                final long lastDifferences =
+                        (long) PACKED_NAMES_AS_LONGS.get(names, start + lastIndexInPattern) ^ lastByteInEachByte;
+                // the high bit of each byte of candidates is set if the text may start at that byte
+                final long candidates = getZeroBytes(firstDifferences) & getZeroBytes(lastDifferences);
+                if (candidates != 0) {
+                    return start + Long.numberOfTrailingZeros(candidates) / Byte.SIZE;
+                }
+            }
+            for (; start + lastIndexInPattern < length; start++) {
+                if (names[start] == pattern[0] && names[start + lastIndexInPattern] == pattern[lastIndexInPattern]) {
+                    return start;
+                }
+            }
+            return length;
+        };
+    }
+
+    /**
+     * Returns the constructor of the Vector API scanner of the packed names, taking the packed names, their
+     * length and the text to search for; or null if the jdk.incubator.vector module was not added at launch
+     * (e.g. with java --add-modules jdk.incubator.vector), or the scanner was not compiled.
+     */
+    private static Constructor<?> findVectorNameScannerConstructor() {
+        if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            return null;
+        }
+        try {
+            return Class.forName("seedu.addressbook.VectorNameScanner")
+                    .getDeclaredConstructor(byte[].class, int.class, byte[].class);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns a long with the high bit set in each byte that is zero in the given long, and clear in each byte
+     * that is not zero and not 0x01. A byte 0x01 above a zero byte may have its high bit set too.
+     */
+    private static long getZeroBytes(long bytes) {
+        return (bytes - LOW_BIT_OF_EACH_BYTE) & ~bytes & HIGH_BIT_OF_EACH_BYTE;
+    }
+
+    /**
+     * Returns true if the bytes starting at the given index of the array are those of the pattern.
+     */
+    private static boolean isPatternAt(byte[] bytes, int start, byte[] pattern) {
+        for (int i = 0; i < pattern.length; i++) {
+            if (bytes[start + i] != pattern[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Packs the names of all persons in the full list again if the list has changed since they were last packed
+     * (other than by the changes {@link #updatePackedNames} keeps them up to date with).
+     */
+    private static void packNamesIfChanged() {
+        if (packedNamesModelVersion == modelVersion) {
+            return;
+        }
+        packedNameCount = 0;
+        appendPackedNames(ALL_PERSONS.size());
+        packedNamesModelVersion = modelVersion;
+    }
+
+    /**
+     * Keeps the packed names up to date with a change to the full list, if they were up to date before it and
+     * the change only added or deleted persons at the end of the full list. Otherwise they are left to be packed
+     * again on the next search. Must be called after the model version is updated for the change.
+     */
+    private static void updatePackedNames(ModelChange change) {
+        if (packedNamesModelVersion != modelVersion - 1) {
+            return; // not up to date since before the change
+        }
+        final int[] positions = change.positions;
+        final int lastPosition = positions[positions.length - 1];
+        final boolean isRange = lastPosition - positions[0] == positions.length - 1;
+        if (change.isInsertion && isRange && lastPosition == ALL_PERSONS.size() - 1) {
+            appendPackedNames(ALL_PERSONS.size());
+            packedNamesModelVersion = modelVersion;
+        } else if (!change.isInsertion && isRange && lastPosition == packedNameCount - 1) {
+            packedNameCount = positions[0];
+            packedNamesModelVersion = modelVersion;
+        }
+    }
+
+    /**
+     * Appends the names of the persons in the full list after those already packed, up to the given position.
+     * Names made of ASCII characters only (the usual case) are copied without allocating.
+     */
+    private static void appendPackedNames(int toPosition) {
+        if (packedNameOffsets.length < toPosition + 1) {
+            packedNameOffsets = Arrays.copyOf(packedNameOffsets,
+                    Math.max(packedNameOffsets.length * 2, toPosition + 1));
+        }
+        int length = packedNameOffsets[packedNameCount];
+        for (int position = packedNameCount; position < toPosition; position++) {
+            final String name = getNameFromPerson(ALL_PERSONS.get(position));
+            if (length + name.length() * 3 > packedNames.length) { // a char takes at most 3 bytes in UTF-8
+                packedNames = Arrays.copyOf(packedNames,
+                        Math.max(packedNames.length * 2, length + name.length() * 3));
+            }
+            int i = 0;
+            while (i < name.length() && name.charAt(i) < 0x80) {
+                packedNames[length + i] = (byte) name.charAt(i);
+                i++;
+            }
+            if (i == name.length()) {
+                length += i;
+            } else {
+                final byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+                System.arraycopy(encoded, 0, packedNames, length, encoded.length);
+                length += encoded.length;
+            }
+            packedNameOffsets[position + 1] = length;
+        }
+        packedNameCount = toPosition;
+    }
+
+    /**
+     * Deletes person identified using last displayed index.
+     *
+     * @param commandArgs full command args string from the user
+     * @return feedback display message for the operation result
+     */
+    private static String executeDeletePerson(String commandArgs) {
+        if (isDeletePersonsArgsValid(commandArgs)) {
+            return executeDeletePersons(commandArgs);
+        }
+        if (!isDeletePersonArgsValid(commandArgs)) {
+            return getMessageForInvalidCommandInput(COMMAND_DELETE_WORD, getUsageInfoForDeleteCommand());
+        }
+        final int targetVisibleIndex = extractTargetIndexFromDeletePersonArgs(commandArgs);
+        if (!isDisplayIndexValidForLastPersonListingView(targetVisibleIndex)) {
+            return MESSAGE_INVALID_PERSON_DISPLAYED_INDEX;
+        }
+        final String[] deletedPerson = deletePersonFromAddressBook(targetVisibleIndex - DISPLAYED_INDEX_OFFSET);
+        return deletedPerson != null ? getMessageForSuccessfulDelete(deletedPerson) // success
+                                     : MESSAGE_PERSON_NOT_IN_ADDRESSBOOK; // not found
+    }
+
+    /**
+     * Checks validity of delete person argument string's format.
+     *
+     * @param rawArgs raw command args string for the delete person command
+     * @return whether the input args string is valid
+     */
+    private static boolean isDeletePersonArgsValid(String rawArgs) {
+        try {
+            final int extractedIndex = Integer.parseInt(rawArgs.trim()); // use standard libraries to parse
+            return extractedIndex >= DISPLAYED_INDEX_OFFSET;
+        } catch (NumberFormatException nfe) {
+            return false;
+        }
+    }
+
+    /**
+     * Deletes all persons identified using last displayed indexes, and saves the address book once.
+     *
+     * @param commandArgs delete command args listing several indexes, e.g. "1,4,7-9"
+     * @return feedback display message for the operation result
+     */
+    private static String executeDeletePersons(String commandArgs) {
+        final ArrayList<int[]> targetIndexRanges = extractTargetIndexRangesFromDeletePersonsArgs(commandArgs);
+        for (int[] range : targetIndexRanges) {
+            if (!isDisplayIndexValidForLastPersonListingView(range[1])) {
+                return MESSAGE_INVALID_PERSON_DISPLAYED_INDEX;
+            }
+        }
+        lockStorageForWrite();
+        final BitSet targetPositions = new BitSet(getPersonCount());
+        int notFoundCount = 0;
+        for (int[] range : targetIndexRanges) {
+            for (int visibleIndex = range[0]; visibleIndex <= range[1]; visibleIndex++) {
+                final int position = getModelPositionInLatestListing(visibleIndex - DISPLAYED_INDEX_OFFSET);
+                if (position < 0) {
+                    notFoundCount++;
+                } else {
+                    targetPositions.set(position);
+                }
+            }
+        }
+        deletePersonsFromAddressBook(targetPositions.stream().toArray());
+        saveChangesAndUnlockStorage(!targetPositions.isEmpty());
+        return getMessageForSuccessfulDeletePersons(targetPositions.cardinality(), notFoundCount);
+    }
+
+    /**
+     * Checks validity of the format of delete command args that list several indexes, e.g. "1,4,7-9".
+     * Each index is a number or a range of numbers FROM-TO (FROM not greater than TO), all at least 1.
+     *
+     * @param rawArgs raw command args string for the delete person command
+     * @return whether the input args string is valid
+     */
+    private static boolean isDeletePersonsArgsValid(String rawArgs) {
+        final String args = rawArgs.replaceAll("\\s", "");
+        if (args.indexOf(DELETE_INDEX_SEPARATOR) < 0 && args.indexOf(DELETE_INDEX_RANGE_MARKER) <= 0) {
+            return false; // a single index, or not a list of indexes
+        }
+        for (String indexOrRange : args.split(String.valueOf(DELETE_INDEX_SEPARATOR), -1)) {
+            final int rangeMarker = indexOrRange.indexOf(DELETE_INDEX_RANGE_MARKER);
+            final String from = rangeMarker < 0 ? indexOrRange : indexOrRange.substring(0, rangeMarker);
+            final String to = rangeMarker < 0 ? indexOrRange : indexOrRange.substring(rangeMarker + 1);
+            if (!from.matches("\\d+") || !to.matches("\\d+") // digits only, no signs
+                    || !isPositiveInteger(from) || !isPositiveInteger(to)
+                    || Integer.parseInt(from) > Integer.parseInt(to)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Extracts the target indexes from delete command args that list several indexes.
+     *
+     * @param rawArgs raw command args string, valid as determined by {@link #isDeletePersonsArgsValid}
+     * @return ranges of displayed indexes, each as {FROM, TO} (both inclusive)
+     */
+    private static ArrayList<int[]> extractTargetIndexRangesFromDeletePersonsArgs(String rawArgs) {
+        final ArrayList<int[]> ranges = new ArrayList<>();
+        for (String indexOrRange : rawArgs.replaceAll("\\s", "").split(String.valueOf(DELETE_INDEX_SEPARATOR))) {
+            final int rangeMarker = indexOrRange.indexOf(DELETE_INDEX_RANGE_MARKER);
+            final int from = Integer.parseInt(rangeMarker < 0 ? indexOrRange : indexOrRange.substring(0, rangeMarker));
+            final int to = Integer.parseInt(rangeMarker < 0 ? indexOrRange : indexOrRange.substring(rangeMarker + 1));
+            ranges.add(new int[] { from, to });
+        }
+        return ranges;
+    }
+
+    /**
+     * Deletes all persons in address book whose name contains any of the argument keywords, and saves the
+     * address book once. Keyword matching is case sensitive.
+     *
+     * @param commandArgs full command args string from the user
+     * @return feedback display message for the operation result
+     */
+    private static String executeDeletePersonsMatching(String commandArgs) {
+        if (commandArgs.trim().isEmpty()) {
+            return getMessageForInvalidCommandInput(COMMAND_DELETE_MATCHING_WORD,
+                    getUsageInfoForDeleteMatchingCommand());
+        }
+        final Set<String> keywords = extractKeywordsFromFindPersonArgs(commandArgs);
+        lockStorageForWrite();
+        final int[] targetPositions = getPositionsOfPersonsWithNameContainingAnyKeyword(keywords);
+        deletePersonsFromAddressBook(targetPositions);
+        saveChangesAndUnlockStorage(targetPositions.length > 0);
+        return getMessageForSuccessfulDeletePersons(targetPositions.length, 0);
+    }
+
+    /**
+     * Constructs a feedback message for a successful delete of several persons.
+     *
+     * @param deletedCount number of persons deleted
+     * @param notFoundCount number of persons targeted that were no longer in the address book
+     */
+    private static String getMessageForSuccessfulDeletePersons(int deletedCount, int notFoundCount) {
+        final String deletedMessage = String.format(MESSAGE_DELETE_PERSONS_SUCCESS, deletedCount);
+        final String notFoundMessage = String.format(MESSAGE_DELETE_PERSONS_NOT_FOUND, notFoundCount);
+        return notFoundCount == 0 ? deletedMessage : deletedMessage + LS + notFoundMessage;
+    }
+
+    /**
+     * Extracts the target's index from the raw delete person args string
+     *
+     * @param rawArgs raw command args string for the delete person command
+     * @return extracted index
+     */
+    private static int extractTargetIndexFromDeletePersonArgs(String rawArgs) {
+        return Integer.parseInt(rawArgs.trim());
+    }
+
+    /**
+     * Checks that the given index is within bounds and valid for the last shown person list view.
+     *
+     * @param index to check
+     * @return whether it is valid
+     */
+    private static boolean isDisplayIndexValidForLastPersonListingView(int index) {
+        return index >= DISPLAYED_INDEX_OFFSET && index < getLatestListingSize() + DISPLAYED_INDEX_OFFSET;
+    }
+
+    /**
+     * Constructs a feedback message for a successful delete person command execution.
+     *
+     * @see #executeDeletePerson(String)
+     * @param deletedPerson successfully deleted
+     * @return successful delete person feedback message
+     */
+    private static String getMessageForSuccessfulDelete(String[] deletedPerson) {
+        return String.format(MESSAGE_DELETE_PERSON_SUCCESS, getMessageForFormattedPersonData(deletedPerson));
+    }
+
+    /**
+     * Clears all persons in the address book.
+     *
+     * @return feedback display message for the operation result
+     */
+    private static String executeClearAddressBook() {
+        clearAddressBook();
+        return MESSAGE_ADDRESSBOOK_CLEARED;
+    }
+
+    /**
+     * Displays all persons in the address book to the user; in added order.
+     * If a page number is given, displays only that page of the listing.
+     *
+     * @param commandArgs full command args string from the user
+     * @return feedback display message for the operation result
+     */
+    private static String executeListAllPersonsInAddressBook(String commandArgs) {
+        final Optional<HashMap<String, String>> options = parseOptionArgs(commandArgs,
+                COMMAND_LIST_OPTION_SORT, COMMAND_LIST_OPTION_FROM, COMMAND_LIST_OPTION_TO,
+                COMMAND_LIST_OPTION_PAGE, COMMAND_LIST_OPTION_SIZE);
+        if (!options.isPresent() || !isListPersonsOptionsValid(options.get())) {
+            return getMessageForInvalidCommandInput(COMMAND_LIST_WORD, getUsageInfoForViewCommand());
+        }
+        if (isPagedStoreOpen() && options.get().containsKey(COMMAND_LIST_OPTION_SORT)) {
+            return String.format(MESSAGE_NOT_SUPPORTED_BY_PAGED_STORE,
+                    COMMAND_LIST_WORD + ' ' + COMMAND_LIST_OPTION_SORT);
+        }
+        final int[] sortedPositions = options.get().containsKey(COMMAND_LIST_OPTION_SORT)
+                ? getPositionsOfPersonsSortedBy(getPersonDataIndexToSortBy(options.get().get(COMMAND_LIST_OPTION_SORT)),
+                        options.get().get(COMMAND_LIST_OPTION_FROM), options.get().get(COMMAND_LIST_OPTION_TO))
+                : null;
+        final int listingSize = sortedPositions == null ? getPersonCount() : sortedPositions.length;
+        final int pageNumber = options.get().containsKey(COMMAND_LIST_OPTION_PAGE)
+                ? Integer.parseInt(options.get().get(COMMAND_LIST_OPTION_PAGE))
+                : 0;
+        final int pageSize = options.get().containsKey(COMMAND_LIST_OPTION_SIZE)
+                ? Integer.parseInt(options.get().get(COMMAND_LIST_OPTION_SIZE))
+                : DEFAULT_PAGE_SIZE;
+        if (pageNumber > getPageCount(listingSize, pageSize)) {
+            return MESSAGE_INVALID_PAGE_NUMBER;
+        }
+        if (sortedPositions == null) {
+            updateLatestViewedPersonListingToAllPersons();
+        } else {
+            updateLatestViewedPersonListing(sortedPositions);
+        }
+        if (pageNumber == 0) {
+            showLatestListingToUser();
+            return getMessageForPersonsDisplayedSummary(latestListingSize);
+        }
+        return showPageOfLatestListingToUser(pageNumber, pageSize);
+    }
+
+    /**
+     * Checks that the page options of the list command are positive numbers, that a page size comes with a page
+     * number, that the sort option names a data element of a person, and that a range comes with a sort option.
+     *
+     * @param options option values given to the list command, keyed by option name
+     * @return whether the options are valid
+     */
+    private static boolean isListPersonsOptionsValid(HashMap<String, String> options) {
+        for (String pageOption : new String[] { COMMAND_LIST_OPTION_PAGE, COMMAND_LIST_OPTION_SIZE }) {
+            if (options.containsKey(pageOption) && !isPositiveInteger(options.get(pageOption))) {
+                return false;
+            }
+        }
+        if (options.containsKey(COMMAND_LIST_OPTION_SORT)
+                && getPersonDataIndexToSortBy(options.get(COMMAND_LIST_OPTION_SORT)) < 0) {
+            return false;
+        }
+        final boolean hasRange = options.containsKey(COMMAND_LIST_OPTION_FROM)
+                || options.containsKey(COMMAND_LIST_OPTION_TO);
+        return (options.containsKey(COMMAND_LIST_OPTION_PAGE) || !options.containsKey(COMMAND_LIST_OPTION_SIZE))
+                && (options.containsKey(COMMAND_LIST_OPTION_SORT) || !hasRange);
+    }
+
+    /**
+     * Returns the index (in a person's data) of the data element named by the sort option of the list command,
+     * or -1 if it names no data element.
+     */
+    private static int getPersonDataIndexToSortBy(String sortOptionValue) {
+        switch (sortOptionValue) {
+        case COMMAND_LIST_SORT_BY_NAME:
+            return PERSON_DATA_INDEX_NAME;
+        case COMMAND_LIST_SORT_BY_PHONE:
+            return PERSON_DATA_INDEX_PHONE;
+        case COMMAND_LIST_SORT_BY_EMAIL:
+            return PERSON_DATA_INDEX_EMAIL;
+        default:
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the positions in the full list of the persons in the given range of values of a data element,
+     * ordered by that data element (case-sensitive). Persons having the same value keep their order in the
+     * full list. The persons are taken from the sorted order, so the full list is not sorted again.
+     * The range is empty if the first value comes after the last one.
+     *
+     * @param personDataIndex index of the data element to sort by, e.g. {@link #PERSON_DATA_INDEX_NAME}
+     * @param firstValue smallest value to include, or null to start from the smallest value
+     * @param lastValuePrefix values up to and including those starting with this are included, or null to
+     *                        include the largest value
+     */
+    private static int[] getPositionsOfPersonsSortedBy(int personDataIndex, String firstValue, String lastValuePrefix) {
+        final IntBuffer order = getSortedOrder(personDataIndex);
+        final int from = firstValue == null ? 0 : countPersonsBefore(order, personDataIndex, firstValue, false);
+        final int to = lastValuePrefix == null
+                ? order.limit()
+                : countPersonsBefore(order, personDataIndex, lastValuePrefix + Character.MAX_VALUE, true);
+        final int[] positions = new int[Math.max(0, to - from)];
+        final IntBuffer range = order.duplicate();
+        range.position(from);
+        range.get(positions);
+        return positions;
+    }
+
+    /**
+     * Returns the number of persons at the start of the sorted order whose value of the data element is less
+     * than the given value (or equal to it, if {@code isInclusive}), found by binary search.
+     */
+    private static int countPersonsBefore(IntBuffer order, int personDataIndex, String value, boolean isInclusive) {
+        final ArrayList<String[]> allPersons = getAllPersonsInAddressBook();
+        int low = 0;
+        int high = order.limit();
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            final int comparison = allPersons.get(order.get(middle))[personDataIndex].compareTo(value);
+            if (comparison < 0 || (isInclusive && comparison == 0)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Displays the page before or after the page of the latest listing last shown to the user.
+     *
+     * @param pageStep 1 for the next page, -1 for the previous page
+     * @return feedback display message for the operation result
+     */
+    private static String executeShowAdjacentPage(int pageStep) {
+        if (latestListingPageNumber == 0) {
+            return String.format(MESSAGE_NO_PAGED_LISTING, COMMAND_LIST_PAGED_EXAMPLE);
+        }
+        final int pageNumber = latestListingPageNumber + pageStep;
+        if (pageNumber < 1) {
+            return MESSAGE_NO_PREVIOUS_PAGE;
+        }
+        if (pageNumber > getPageCount(getLatestListingSize(), latestListingPageSize)) {
+            return MESSAGE_NO_NEXT_PAGE;
+        }
+        return showPageOfLatestListingToUser(pageNumber, latestListingPageSize);
+    }
+
+    /**
+     * Returns the number of pages needed to show a listing. An empty listing has one (empty) page.
+     */
+    private static int getPageCount(int listingSize, int pageSize) {
+        return Math.max(1, (int) ((listingSize + (long) pageSize - 1) / pageSize));
+    }
+
+    /**
+     * Shows statistics about how the storage file has been used, including how often writes from different
+     * processes collided, and how often find results were reused from the cache; and whether text searches
+     * use the Vector API.
+     *
+     * @return feedback display message for the operation result
+     */
+    private static String executeShowStatistics() {
+        final long findCount = findCacheHitCount + findCacheMissCount;
+        final long findCacheHitPercentage = findCount == 0 ? 0 : findCacheHitCount * 100 / findCount;
+        final String statistics = String.format(MESSAGE_STORAGE_STATISTICS,
+                storageWriteCount, storageLockWaitCount, storageReloadCount, watchedChangeCount,
+                findCacheHitCount, findCount, findCacheHitPercentage)
+                + (VECTOR_NAME_SCANNER_CONSTRUCTOR != null ? LS + MESSAGE_VECTOR_NAME_SCANS : "");
+        if (isPagedStoreOpen()) {
+            return statistics + LS + getPagedStoreStatistics();
+        }
+        if (isReplicationPrimary) {
+            return statistics + LS + getPrimaryStatistics();
+        }
+        if (replicationPrimaryAddress != null) {
+            return statistics + LS + String.format(MESSAGE_REPLICA_STATISTICS, replicationPrimaryAddress,
+                    isConnectedToPrimary ? MESSAGE_REPLICA_CONNECTED : MESSAGE_REPLICA_DISCONNECTED,
+                    appliedReplicationSequenceNumber, Math.max(appliedReplicationSequenceNumber,
+                                                               primaryLatestSequenceNumber),
+                    latestReplicationLagMillis, maxReplicationLagMillis);
+        }
+        return statistics;
+    }
+
+    private static String getPrimaryStatistics() {
+        synchronized (REPLICATION_LOG) {
+            return String.format(MESSAGE_PRIMARY_STATISTICS,
+                    replicationPort, latestReplicationSequenceNumber, connectedReplicaCount.get());
+        }
+    }
+
+    /**
+     * Undoes the latest step in the undo history, and saves the address book.
+     *
+     * @return feedback display message for the operation result
+     */
+    private static String executeUndoChange() {
+        if (isInTransaction) {
+            return String.format(MESSAGE_UNDO_IN_TRANSACTION, COMMAND_ROLLBACK_WORD);
+        }
+        lockStorageForWrite();
+        if (UNDO_HISTORY.isEmpty()) { // possibly forgotten just now, because of external changes
+            saveChangesAndUnlockStorage(false);
+            return MESSAGE_NOTHING_TO_UNDO;
+        }
+        final ArrayList<ModelChange> redoStep = reverseHistoryStep(UNDO_HISTORY.removeLast());
+        REDO_HISTORY.addLast(redoStep);
+        saveChangesAndUnlockStorage(true);
+        return getMessageForHistoryStep(MESSAGE_UNDONE, redoStep);
+    }
+
+    /**
+     * Redoes the latest step undone, and saves the address book.
+     *
+     * @return feedback display message for the operation result
+     */
+    private static String executeRedoChange() {
+        if (isInTransaction) {
+            return String.format(MESSAGE_UNDO_IN_TRANSACTION, COMMAND_ROLLBACK_WORD);
+        }
+        lockStorageForWrite();
+        if (REDO_HISTORY.isEmpty()) {
+            saveChangesAndUnlockStorage(false);
+            return MESSAGE_NOTHING_TO_REDO;
+        }
+        final ArrayList<ModelChange> undoStep = reverseHistoryStep(REDO_HISTORY.removeLast());
+        UNDO_HISTORY.addLast(undoStep);
+        saveChangesAndUnlockStorage(true);
+        return getMessageForHistoryStep(MESSAGE_REDONE, undoStep);
+    }
+
+    /**
+     * Reverses the changes of a step in the history, latest first.
+     *
+     * @param step changes to reverse, oldest first
+     * @return the reverse changes made, oldest first; reversing them makes the original changes again
+     */
+    private static ArrayList<ModelChange> reverseHistoryStep(ArrayList<ModelChange> step) {
+        CHANGES_IN_LATEST_COMMAND.clear();
+        for (int i = step.size() - 1; i >= 0; i--) {
+            undoModelChange(step.get(i));
+        }
+        final ArrayList<ModelChange> reverseStep = new ArrayList<>(CHANGES_IN_LATEST_COMMAND);
+        CHANGES_IN_LATEST_COMMAND.clear();
+        return reverseStep;
+    }
+
+    /**
+     * Constructs a feedback message for an undo or redo, counting the persons added and deleted by it.
+     *
+     * @param messageFormat format of the message, taking the number of persons added and deleted
+     * @param step changes made by the undo or redo
+     */
+    private static String getMessageForHistoryStep(String messageFormat, ArrayList<ModelChange> step) {
+        int addedCount = 0;
+        int deletedCount = 0;
+        for (ModelChange change : step) {
+            if (change.isInsertion) {
+                addedCount += change.positions.length;
+            } else {
+                deletedCount += change.positions.length;
+            }
+        }
+        return String.format(messageFormat, addedCount, deletedCount);
+    }
+
+    /**
+     * Makes the changes of the latest command one step in the undo history, dropping the oldest step if the
+     * history is full, and forgets the steps undone. Does nothing if the latest command made no changes,
+     * or while a transaction is in progress (a transaction becomes one step when it is committed).
+     */
+    private static void addLatestCommandToUndoHistory() {
+        if (isInTransaction || CHANGES_IN_LATEST_COMMAND.isEmpty()) {
+            return;
+        }
+        UNDO_HISTORY.addLast(new ArrayList<>(CHANGES_IN_LATEST_COMMAND));
+        CHANGES_IN_LATEST_COMMAND.clear();
+        REDO_HISTORY.clear();
+        while (UNDO_HISTORY.size() > getUndoHistoryDepth()) {
+            UNDO_HISTORY.removeFirst();
+        }
+    }
+
+    /**
+     * Forgets all changes that could be undone or redone, and the changes made so far by the latest command.
+     */
+    private static void forgetUndoHistory() {
+        CHANGES_IN_LATEST_COMMAND.clear();
+        UNDO_HISTORY.clear();
+        REDO_HISTORY.clear();
+    }
+
+    /**
+     * Returns the maximum number of steps in the undo history, chosen through the
+     * {@link #UNDO_HISTORY_DEPTH_PROPERTY} system property.
+     */
+    private static int getUndoHistoryDepth() {
+        try {
+            return Math.max(0, Integer.parseInt(System.getProperty(UNDO_HISTORY_DEPTH_PROPERTY, "").trim()));
+        } catch (NumberFormatException nfe) {
+            return DEFAULT_UNDO_HISTORY_DEPTH;
+        }
+    }
+
+    /**
+     * Starts a transaction. Changes made until it is committed or rolled back are not saved to the storage file.
+     *
+     * @return feedback display message for the operation result
+     */
+    private static String executeBeginTransaction() {
+        if (isInTransaction) {
+            return MESSAGE_TRANSACTION_ALREADY_STARTED;
+        }
+        isInTransaction = true;
+        CHANGES_IN_TRANSACTION.clear();
+        return String.format(MESSAGE_TRANSACTION_STARTED, COMMAND_COMMIT_WORD);
+    }
+
+    /**
+     * Saves all changes made in the transaction in progress to the storage file, with a single write.
+     * If another process saved the storage file during the transaction, the transaction is rolled back instead
+     * and the changes of the other process are loaded.
+     *
+     * @return feedback display message for the operation result
+     */
+    private static String executeCommitTransaction() {
+        if (!isInTransaction) {
+            return MESSAGE_TRANSACTION_NOT_STARTED;
+        }
+        final int changeCount = CHANGES_IN_TRANSACTION.size();
+        lockStorage();
+        final long storageVersion = readStorageVersion();
+        if (isStorageChangedExternally(storageVersion)) {
+            rollbackTransaction();
+            storageReloadCount++;
+            reloadChangedPersonsFromFile(storageFilePath);
+            rememberStorageVersion(storageVersion);
+            unlockStorage();
+            return MESSAGE_TRANSACTION_CONFLICT;
+        }
+        endTransaction();
+        if (changeCount > 0) {
+            saveModelToLockedStorage();
+        }
+        unlockStorage();
+        return String.format(MESSAGE_TRANSACTION_COMMITTED, changeCount);
+    }
+
+    /**
+     * Undoes all changes made in the transaction in progress.
+     *
+     * @return feedback display message for the operation result
+     */
+    private static String executeRollbackTransaction() {
+        if (!isInTransaction) {
+            return MESSAGE_TRANSACTION_NOT_STARTED;
+        }
+        final int changeCount = CHANGES_IN_TRANSACTION.size();
+        rollbackTransaction();
+        return String.format(MESSAGE_TRANSACTION_ROLLED_BACK, changeCount);
+    }
+
+    /**
+     * Ends the transaction in progress, undoing its changes latest first. The transaction leaves no step in the
+     * undo history.
+     */
+    private static void rollbackTransaction() {
+        final ArrayList<ModelChange> changesToUndo = new ArrayList<>(CHANGES_IN_TRANSACTION);
+        endTransaction();
+        for (int i = changesToUndo.size() - 1; i >= 0; i--) {
+            undoModelChange(changesToUndo.get(i));
+        }
+        CHANGES_IN_LATEST_COMMAND.clear();
+    }
+
+    private static void endTransaction() {
+        isInTransaction = false;
+        CHANGES_IN_TRANSACTION.clear();
+    }
+
+    /**
+     * Requests to terminate the program. Changes in a transaction that was not committed are discarded.
+     */
+    private static void executeExitProgramRequest() {
+        if (isInTransaction) {
+            showToUser(String.format(MESSAGE_TRANSACTION_DISCARDED, CHANGES_IN_TRANSACTION.size()));
+        } else if (isPagedStoreOpen()) {
+            savePagedStore();
+        } else {
+            saveSortedIndexesToFile();
+        }
+        exitProgram();
+    }
+
+    /*
+     * ===========================================
+     *               UI LOGIC
+     * ===========================================
+     */
+
+    /**
+     * Prompts for the command and reads the text entered by the user.
+     * Ignores lines with first non-whitespace char equal to {@link #INPUT_COMMENT_MARKER} (considered comments)
+     *
+     * @return full line entered by the user
+     */
+    private static String getUserInput() {
+        System.out.print(LINE_PREFIX + "Enter command: ");
+        String inputLine = SCANNER.nextLine();
+        // silently consume all blank and comment lines
+        while (isBlankOrCommentLine(inputLine)) {
+            inputLine = SCANNER.nextLine();
+        }
+        return inputLine;
+    }
+
+    /**
+     * Returns true if the line is blank, or if its first non-whitespace char is {@link #INPUT_COMMENT_MARKER}.
+     */
+    private static boolean isBlankOrCommentLine(String inputLine) {
+        final int firstCharPosition = skipWhitespace(inputLine, 0);
+        return firstCharPosition == inputLine.length() || inputLine.charAt(firstCharPosition) == INPUT_COMMENT_MARKER;
+    }
+
+   /*
+    * NOTE : =============================================================
+    * Note how the method below uses Java 'Varargs' feature so that the
+    * method can accept a varying number of message parameters.
+    * ====================================================================
+    */
+
+    /**
+     * Shows a message to the user
+     */
+    private static void showToUser(String... message) {
+        for (String m : message) {
+            System.out.println(LINE_PREFIX + m);
+        }
+    }
+
+    /**
+     * Shows the whole latest person listing to the user.
+     * The list will be indexed, starting from 1.
+     *
+     */
+    private static void showLatestListingToUser() {
+        showPersonListingToUser(0, getLatestListingSize());
+        latestListingPageNumber = 0;
+    }
+
+    /**
+     * Shows one page of the latest person listing to the user. Persons keep the display index they have
+     * in the whole listing, so that the index can be used with commands such as delete.
+     *
+     * @param pageNumber page to show, starting from 1
+     * @param pageSize number of persons on each page
+     * @return summary message for the page shown
+     */
+    private static String showPageOfLatestListingToUser(int pageNumber, int pageSize) {
+        final int listingSize = getLatestListingSize();
+        final int fromIndex = (int) Math.min((long) (pageNumber - 1) * pageSize, listingSize);
+        final int toIndex = (int) Math.min((long) fromIndex + pageSize, listingSize);
+        showPersonListingToUser(fromIndex, toIndex);
+        latestListingPageNumber = pageNumber;
+        latestListingPageSize = pageSize;
+        return String.format(MESSAGE_PAGE_OVERVIEW, pageNumber, getPageCount(listingSize, pageSize),
+                fromIndex + DISPLAYED_INDEX_OFFSET, toIndex, listingSize);
+    }
+
+    /**
+     * Shows a listing formatted by {@link #renderPersonListingRows(int[])} to the user, as a single message.
+     */
+    private static void showRenderedListingToUser(String renderedRows) {
+        LISTING_OUTPUT.print(LINE_PREFIX);
+        LISTING_OUTPUT.print(renderedRows);
+        LISTING_OUTPUT.println();
+        LISTING_OUTPUT.flush();
+        latestListingPageNumber = 0;
+    }
+
+    /**
+     * Formats the rows of a listing of the persons at the given positions in the full list, the same way as
+     * {@link #showPersonListingToUser(int, int)} shows them.
+     *
+     * @param positionsInModel positions in the full list of the persons in the listing, in display order
+     */
+    private static String renderPersonListingRows(int[] positionsInModel) {
+        final StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < positionsInModel.length; i++) {
+            appendPersonListingRow(rows, i + DISPLAYED_INDEX_OFFSET, getPersonAt(positionsInModel[i]));
+        }
+        return rows.toString();
+    }
+
+    /**
+     * Streams a range of the latest person listing to the user, a buffer of rows at a time, as a single message.
+     * Rows are written out as soon as the buffer fills up, so nothing proportional to the size of the listing
+     * is built up in memory.
+     *
+     * @param fromIndex position in the listing of the first person to show (inclusive)
+     * @param toIndex position in the listing of the last person to show (exclusive)
+     */
+    private static void showPersonListingToUser(int fromIndex, int toIndex) {
+        LISTING_OUTPUT.print(LINE_PREFIX);
+        final Iterator<String[]> persons = isLatestListingInModelOrder() ? getPersonIterator(fromIndex, toIndex) : null;
+        for (int i = fromIndex; i < toIndex; i++) {
+            final String[] person = persons != null ? persons.next() : getPersonInLatestListing(i);
+            appendPersonListingRow(LISTING_ROWS_BUFFER, i + DISPLAYED_INDEX_OFFSET, person);
+            if (LISTING_ROWS_BUFFER.length() >= LISTING_ROWS_BUFFER_FLUSH_SIZE) {
+                writeListingRowsBuffer();
+            }
+        }
+        writeListingRowsBuffer();
+        LISTING_OUTPUT.println();
+        LISTING_OUTPUT.flush();
+    }
+
+    /**
+     * Appends a prettified listing element representing a person and their data, with its display index,
+     * as a row of a listing to the given buffer.
+     */
+    private static void appendPersonListingRow(StringBuilder rows, int visibleIndex, String[] person) {
+        rows.append('\t');
+        appendTemplate(rows, DISPLAY_LIST_ELEMENT_INDEX_TEMPLATE, visibleIndex);
+        appendTemplate(rows, DISPLAY_PERSON_DATA_TEMPLATE, person);
+        rows.append(LS);
+    }
+
+    /**
+     * Copies the rows in the listing rows buffer to the listing output, and empties the buffer.
+     */
+    private static void writeListingRowsBuffer() {
+        final int length = LISTING_ROWS_BUFFER.length();
+        if (listingOutputChars.length < length) {
+            listingOutputChars = new char[length];
+        }
+        LISTING_ROWS_BUFFER.getChars(0, length, listingOutputChars, 0);
+        LISTING_OUTPUT.write(listingOutputChars, 0, length);
+        LISTING_ROWS_BUFFER.setLength(0);
+    }
+
+    /**
+     * Constructs a prettified string to show the user a person's data.
+     *
+     * @param person to show
+     * @return formatted message showing internal state
+     */
+    private static String getMessageForFormattedPersonData(String[] person) {
+        final StringBuilder message = new StringBuilder();
+        appendTemplate(message, DISPLAY_PERSON_DATA_TEMPLATE, person);
+        return message.toString();
+    }
+
+    /**
+     * Updates the latest person listing view the user has seen.
+     *
+     * @param positionsInModel positions in the full list of the persons in the new listing, in display order
+     */
+    private static void updateLatestViewedPersonListing(int[] positionsInModel) {
+        isLatestListingLive = false;
+        latestListingPositions = positionsInModel;
+        latestListingSize = positionsInModel.length;
+        CHANGES_SINCE_LATEST_LISTING.clear();
+    }
+
+    /**
+     * Updates the latest person listing view the user has seen to be the whole full list, as it is now.
+     */
+    private static void updateLatestViewedPersonListingToAllPersons() {
+        isLatestListingLive = false;
+        latestListingPositions = null;
+        latestListingSize = getPersonCount();
+        CHANGES_SINCE_LATEST_LISTING.clear();
+    }
+
+    private static int getLatestListingSize() {
+        return isLatestListingLive ? getPersonCount() : latestListingSize;
+    }
+
+    /**
+     * Returns true if the person at each position of the latest listing is the person at the same position
+     * of the full list, so that the listing can be read from the full list in order.
+     */
+    private static boolean isLatestListingInModelOrder() {
+        return isLatestListingLive || (latestListingPositions == null && CHANGES_SINCE_LATEST_LISTING.isEmpty());
+    }
+
+    /**
+     * Retrieves the person identified by the displayed index from the last shown listing of persons.
+     *
+     * @param lastVisibleIndex displayed index from last shown person listing
+     * @return the actual person object in the last shown person listing
+     */
+    private static String[] getPersonByLastVisibleIndex(int lastVisibleIndex) {
+       return getPersonInLatestListing(lastVisibleIndex - DISPLAYED_INDEX_OFFSET);
+    }
+
+    /**
+     * Retrieves the person at the given position of the latest listing, by tracing the position the person had
+     * in the full list through the changes made to the full list since. A person deleted since then is still
+     * returned, although it is no longer in the full list.
+     *
+     * @param listingPosition position in the latest listing, starting from 0
+     * @return the actual person object in the last shown person listing
+     */
+    private static String[] getPersonInLatestListing(int listingPosition) {
+        final int position = getModelPositionInLatestListing(listingPosition);
+        return position >= 0 ? getPersonAt(position) : getDeletedPersonInLatestListing(listingPosition);
+    }
+
+    /**
+     * Returns the current position in the full list of the person at the given position of the latest listing,
+     * or -1 if that person was deleted since the listing was shown.
+     *
+     * @param listingPosition position in the latest listing, starting from 0
+     */
+    private static int getModelPositionInLatestListing(int listingPosition) {
+        if (isLatestListingLive) {
+            return listingPosition;
+        }
+        int position = latestListingPositions == null ? listingPosition : latestListingPositions[listingPosition];
+        for (ModelChange change : CHANGES_SINCE_LATEST_LISTING) {
+            position = getPositionAfterChange(position, change);
+            if (position < 0) {
+                return -1;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Returns the person at the given position of the latest listing, who was deleted since the listing was shown.
+     *
+     * @param listingPosition position in the latest listing, of a person no longer in the full list
+     */
+    private static String[] getDeletedPersonInLatestListing(int listingPosition) {
+        int position = latestListingPositions == null ? listingPosition : latestListingPositions[listingPosition];
+        for (ModelChange change : CHANGES_SINCE_LATEST_LISTING) {
+            final int positionAfterChange = getPositionAfterChange(position, change);
+            if (positionAfterChange < 0) {
+                return change.persons.get(Arrays.binarySearch(change.positions, position));
+            }
+            position = positionAfterChange;
+        }
+        throw new IllegalStateException("Person in latest listing was not deleted");
+    }
+
+    /**
+     * Returns the new position of a person in the full list after a change to the full list,
+     * or -1 if the change deleted the person.
+     */
+    private static int getPositionAfterChange(int position, ModelChange change) {
+        if (change.isInsertion) {
+            return getPositionAfterInsertion(position, change.positions);
+        }
+        final int searchResult = Arrays.binarySearch(change.positions, position);
+        if (searchResult >= 0) {
+            return -1;
+        }
+        final int deletedBefore = -searchResult - 1;
+        return position - deletedBefore;
+    }
+
+    /**
+     * Returns the new position of a person in the full list after other persons were inserted into it.
+     *
+     * The person moves down by the number of persons inserted before it, which is the number of inserted
+     * persons whose position minus the number inserted before them is at most its old position. That number
+     * never decreases along the ascending inserted positions, so it is found with a binary search.
+     *
+     * @param position of the person before the insertion
+     * @param insertedPositions ascending positions of the inserted persons after the insertion
+     */
+    private static int getPositionAfterInsertion(int position, int[] insertedPositions) {
+        int low = 0;
+        int high = insertedPositions.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (insertedPositions[middle] - middle <= position) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return position + low;
+    }
+
+
+    /*
+     * ===========================================
+     *             STORAGE LOGIC
+     * ===========================================
+     */
+
+    /**
+     * Creates storage file if it does not exist. Shows feedback to user.
+     *
+     * @param filePath file to create if not present
+     */
+    private static void createFileIfMissing(String filePath) {
+        final File storageFile = new File(filePath);
+        if (storageFile.exists()) {
+            return;
+        }
+
+        showToUser(String.format(MESSAGE_ERROR_MISSING_STORAGE_FILE, filePath));
+
+        try {
+            storageFile.createNewFile();
+            showToUser(String.format(MESSAGE_STORAGE_FILE_CREATED, filePath));
+        } catch (IOException ioe) {
+            showToUser(String.format(MESSAGE_ERROR_CREATING_STORAGE_FILE, filePath));
+            exitProgram();
+        }
+    }
+
+    /**
+     * Converts contents of a file into a list of persons.
+     * Shows error messages and exits program if any errors in reading or decoding was encountered.
+     *
+     * @param filePath file to load from
+     * @return the list of decoded persons
+     */
+    private static ArrayList<String[]> loadPersonsFromFile(String filePath) {
+        final CRC32 checksum = new CRC32();
+        final Optional<ArrayList<String[]>> successfullyDecoded = decodePersonsInFile(filePath, checksum);
+        if (!successfullyDecoded.isPresent()) {
+            showToUser(MESSAGE_INVALID_STORAGE_FILE_CONTENT);
+            exitProgram();
+        }
+        knownStorageFileChecksum = checksum.getValue();
+        return successfullyDecoded.get();
+    }
+
+    /**
+     * Decodes the persons in the specified file, one line at a time.
+     * Shows error messages and exits program if unable to read from file.
+     *
+     * @param checksum updated with all bytes read from the file
+     * @return if any line cannot be decoded: empty Optional
+     *         else: Optional containing decoded persons
+     */
+    private static Optional<ArrayList<String[]>> decodePersonsInFile(String filePath, Checksum checksum) {
+        Optional<ArrayList<String[]>> decoded = null;
+        try {
+            decoded = readPersonsFromFile(Paths.get(filePath), checksum);
+        } catch (FileNotFoundException fnfe) {
+            showToUser(String.format(MESSAGE_ERROR_MISSING_STORAGE_FILE, filePath));
+            exitProgram();
+        } catch (IOException ioe) {
+            showToUser(String.format(MESSAGE_ERROR_READING_FROM_FILE, filePath));
+            exitProgram();
+        }
+        return decoded;
+    }
+
+    /**
+     * Reads and decodes the persons in the file as it goes, so that only the decoded persons (and not also
+     * every line of the file) are held in memory at the peak of loading a large address book.
+     *
+     * @param checksum updated with all bytes read from the file
+     * @return if any line cannot be decoded: empty Optional
+     *         else: Optional containing decoded persons
+     */
+    private static Optional<ArrayList<String[]>> readPersonsFromFile(Path file, Checksum checksum)
+            throws IOException {
+        final ArrayList<String[]> decodedPersons = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new CheckedInputStream(Files.newInputStream(file), checksum), StandardCharsets.UTF_8.newDecoder()))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                final Optional<String[]> decodedPerson = decodePersonFromString(line);
+                if (!decodedPerson.isPresent()) {
+                    return Optional.empty();
+                }
+                decodedPersons.add(decodedPerson.get());
+            }
+        }
+        decodedPersons.trimToSize();
+        return Optional.of(decodedPersons);
+    }
+
+    /**
+     * Saves all data to the file. Exits program if there is an error saving to file.
+     * The data is first written to a temporary file in the same directory, forced to disk as decided by
+     * the fsync policy, and then moved over the storage file in one atomic step. A crash during the save
+     * therefore leaves either the old or the new storage file, never a truncated one.
+     *
+     * @param filePath file for saving
+     */
+    private static void savePersonsToFile(ArrayList<String[]> persons, String filePath) {
+        final Path storageFile = Paths.get(filePath);
+        final Path tempFile = getTempFileForStorage(filePath);
+        final boolean isForced = isSaveToBeForced();
+        try {
+            writePersonsToFile(persons, tempFile, isForced);
+            moveAtomically(tempFile, storageFile);
+            knownStorageFileChecksum = FILE_OUTPUT_CHECKSUM.getValue();
+            if (isForced) {
+                forceDirectoryOf(storageFile);
+                lastForcedSaveMillis = System.currentTimeMillis();
+            }
+        } catch (IOException ioe) {
+            showToUser(String.format(MESSAGE_ERROR_WRITING_TO_FILE, filePath));
+            exitProgram();
+        }
+    }
+
+    /**
+     * Writes the persons to the file in their string representation, one per line, replacing any existing
+     * content. Persons are encoded through the file output buffer a few at a time, so saving does not need
+     * memory in proportion to the size of the address book.
+     *
+     * @param isForced whether the written data must reach the disk before this method returns
+     */
+    private static void writePersonsToFile(ArrayList<String[]> persons, Path file, boolean isForced)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            FILE_OUTPUT_BUFFER.clear();
+            FILE_OUTPUT_ENCODER.reset();
+            FILE_OUTPUT_CHECKSUM.reset();
+            final StringBuilder lines = new StringBuilder(FILE_OUTPUT_BUFFER_SIZE);
+            for (String[] person : persons) {
+                appendTemplate(lines, PERSON_STRING_TEMPLATE, person);
+                lines.append(System.lineSeparator());
+                if (lines.length() >= FILE_OUTPUT_BUFFER_SIZE) {
+                    writeToFileChannel(channel, lines);
+                    lines.setLength(0);
+                }
+            }
+            writeToFileChannel(channel, lines);
+            flushFileOutputBuffer(channel);
+            if (isForced) {
+                channel.force(true);
+            }
+        }
+    }
+
+    /**
+     * Moves the source file over the target file in one atomic step if the file system supports it.
+     */
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException amnse) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Forces the directory entry of the file to disk so that a completed rename survives a crash.
+     * Not all platforms allow a directory to be opened; the rename is left to the OS on those.
+     */
+    private static void forceDirectoryOf(Path file) {
+        final Path directory = file.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            // directory cannot be opened on this platform
+        }
+    }
+
+    /**
+     * Returns true if the next save must be forced to disk, according to the fsync policy.
+     */
+    private static boolean isSaveToBeForced() {
+        switch (getFsyncPolicy()) {
+        case FSYNC_POLICY_NEVER:
+            return false;
+        case FSYNC_POLICY_PERIODIC:
+            return System.currentTimeMillis() - lastForcedSaveMillis >= getFsyncIntervalMillis();
+        default:
+            return true;
+        }
+    }
+
+    /**
+     * Returns the fsync policy chosen through the {@link #FSYNC_POLICY_PROPERTY} system property.
+     * Unknown values fall back to the safest policy.
+     */
+    private static String getFsyncPolicy() {
+        return System.getProperty(FSYNC_POLICY_PROPERTY, FSYNC_POLICY_ALWAYS).trim();
+    }
+
+    /**
+     * Returns the interval used by the periodic fsync policy.
+     */
+    private static long getFsyncIntervalMillis() {
+        try {
+            return Long.parseLong(System.getProperty(FSYNC_INTERVAL_PROPERTY, "").trim());
+        } catch (NumberFormatException nfe) {
+            return DEFAULT_FSYNC_INTERVAL_MILLIS;
+        }
+    }
+
+    /**
+     * Returns the temporary file that saves to the given storage file are written to first.
+     */
+    private static Path getTempFileForStorage(String filePath) {
+        return Paths.get(filePath + STORAGE_TEMP_FILE_SUFFIX);
+    }
+
+    /**
+     * Cleans up after a save that was interrupted by a crash. Shows feedback to user.
+     * The atomic move is the last step of a save, so a leftover temporary file was never committed and is
+     * discarded; the storage file still holds the last completed save. If the storage file itself is
+     * missing, the leftover file is the only data left and it becomes the storage file.
+     *
+     * @param filePath storage file whose leftover temporary file is to be recovered
+     */
+    private static void recoverInterruptedSave(String filePath) {
+        final Path tempFile = getTempFileForStorage(filePath);
+        if (!Files.isRegularFile(tempFile)) {
+            return;
+        }
+        try {
+            if (Files.exists(Paths.get(filePath))) {
+                Files.delete(tempFile);
+                showToUser(String.format(MESSAGE_DISCARDED_INTERRUPTED_SAVE, tempFile));
+            } else {
+                moveAtomically(tempFile, Paths.get(filePath));
+                showToUser(String.format(MESSAGE_RECOVERED_INTERRUPTED_SAVE, filePath));
+            }
+        } catch (IOException ioe) {
+            showToUser(String.format(MESSAGE_ERROR_WRITING_TO_FILE, filePath));
+            exitProgram();
+        }
+    }
+
+
+    /**
+     * Returns the index file that the sorted orders of the given storage file are saved to.
+     */
+    private static Path getIndexFileForStorage(String filePath) {
+        return Paths.get(filePath + STORAGE_INDEX_FILE_SUFFIX);
+    }
+
+    /**
+     * Memory-maps the index file of the storage file, and uses the sorted orders in it if they were saved for
+     * exactly the storage file content just loaded. A missing, stale or damaged index file is ignored; the
+     * sorted orders are then built from the full list when first needed.
+     */
+    private static void loadSortedIndexesFromFile() {
+        final Path indexFile = getIndexFileForStorage(storageFilePath);
+        if (knownStorageFileChecksum < 0 || !Files.isRegularFile(indexFile)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            if (channel.size() < INDEX_FILE_HEADER_SIZE + Long.BYTES || channel.size() > Integer.MAX_VALUE) {
+                return;
+            }
+            final ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (isIndexFileCurrent(index)) {
+                final ByteBuffer orders = index.duplicate();
+                orders.position(INDEX_FILE_HEADER_SIZE);
+                for (int dataIndex = 0; dataIndex < PERSON_DATA_COUNT; dataIndex++) {
+                    final int orderLength =
+                            index.getInt(INDEX_FILE_ORDER_LENGTHS_OFFSET + dataIndex * Integer.BYTES);
+                    final IntBuffer order = orders.slice().asIntBuffer();
+                    order.limit(orderLength);
+                    SORTED_ORDERS[dataIndex] = orderLength == 0 ? null : order;
+                    orders.position(orders.position() + orderLength * Integer.BYTES);
+                }
+            }
+        } catch (IOException ioe) {
+            // the sorted orders are built when needed instead
+        }
+    }
+
+    /**
+     * Returns true if the index file content is complete, undamaged, and was saved for the storage file
+     * content last loaded.
+     */
+    private static boolean isIndexFileCurrent(ByteBuffer index) {
+        final ByteBuffer header = index.duplicate();
+        if (header.getInt() != INDEX_FILE_MAGIC || header.getInt() != INDEX_FILE_FORMAT_VERSION
+                || header.getLong() != knownStorageFileSize || header.getLong() != knownStorageFileChecksum) {
+            return false;
+        }
+        final int personCount = header.getInt();
+        if (personCount != getAllPersonsInAddressBook().size()) {
+            return false;
+        }
+        long expectedSize = INDEX_FILE_HEADER_SIZE + Long.BYTES;
+        for (int dataIndex = 0; dataIndex < PERSON_DATA_COUNT; dataIndex++) {
+            final int orderLength = header.getInt();
+            if (orderLength != 0 && orderLength != personCount) {
+                return false;
+            }
+            expectedSize += (long) orderLength * Integer.BYTES;
+        }
+        if (expectedSize != index.capacity()) {
+            return false;
+        }
+        final ByteBuffer content = index.duplicate();
+        content.limit(index.capacity() - Long.BYTES);
+        final CRC32 checksum = new CRC32();
+        checksum.update(content);
+        return index.getLong(index.capacity() - Long.BYTES) == checksum.getValue();
+    }
+
+    /**
+     * Saves the sorted orders of the persons to the index file of the storage file, for each data element
+     * that a sorted order is known for. Does nothing if no sorted order is known, or if the model may differ
+     * from the storage file content last loaded or saved.
+     * The index file is only a cache, so failing to save it is not an error.
+     */
+    private static void saveSortedIndexesToFile() {
+        boolean hasSortedOrder = false;
+        for (IntBuffer order : SORTED_ORDERS) {
+            hasSortedOrder = hasSortedOrder || order != null;
+        }
+        if (!hasSortedOrder || knownStorageFileChecksum < 0) {
+            return;
+        }
+        final int[][] orders = new int[PERSON_DATA_COUNT][];
+        for (int dataIndex = 0; dataIndex < PERSON_DATA_COUNT; dataIndex++) {
+            orders[dataIndex] = SORTED_ORDERS[dataIndex] == null
+                    ? new int[0]
+                    : getPositionsOfPersonsSortedBy(dataIndex, null, null);
+        }
+        final Path indexFile = getIndexFileForStorage(storageFilePath);
+        final Path tempFile = Paths.get(indexFile + STORAGE_TEMP_FILE_SUFFIX);
+        try (OutputStream file = Files.newOutputStream(tempFile)) {
+            final CRC32 checksum = new CRC32();
+            final DataOutputStream index =
+                    new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, checksum)));
+            index.writeInt(INDEX_FILE_MAGIC);
+            index.writeInt(INDEX_FILE_FORMAT_VERSION);
+            index.writeLong(knownStorageFileSize);
+            index.writeLong(knownStorageFileChecksum);
+            index.writeInt(getAllPersonsInAddressBook().size());
+            for (int[] order : orders) {
+                index.writeInt(order.length);
+            }
+            for (int[] order : orders) {
+                for (int position : order) {
+                    index.writeInt(position);
+                }
+            }
+            index.flush();
+            new DataOutputStream(file).writeLong(checksum.getValue());
+        } catch (IOException ioe) {
+            return;
+        }
+        try {
+            moveAtomically(tempFile, indexFile);
+        } catch (IOException ioe) {
+            // the sorted orders are built again after the next start up
+        }
+    }
+
+    /**
+     * Locks the storage file against writes from other processes, and brings the model up to date with any
+     * changes other processes saved since this process last loaded or saved the storage file.
+     * Must be paired with {@link #saveChangesAndUnlockStorage}.
+     * Does nothing while a transaction is in progress; the storage file is only written on commit.
+     * Does nothing with the paged store either, as it stays locked while the program runs.
+     */
+    private static void lockStorageForWrite() {
+        if (isInTransaction || isPagedStoreOpen()) {
+            return;
+        }
+        lockStorage();
+        final long storageVersion = readStorageVersion();
+        if (isStorageChangedExternally(storageVersion)) {
+            storageReloadCount++;
+            final int reloadedCount = reloadChangedPersonsFromFile(storageFilePath);
+            showToUser(String.format(MESSAGE_RELOADED_EXTERNAL_CHANGES, reloadedCount));
+        }
+        rememberStorageVersion(storageVersion);
+    }
+
+    /**
+     * Saves the model to the storage file if it was changed, and releases the lock taken by
+     * {@link #lockStorageForWrite}. Does nothing while a transaction is in progress.
+     *
+     * @param hasChanges true if the model was changed while the storage file was locked
+     */
+    private static void saveChangesAndUnlockStorage(boolean hasChanges) {
+        if (isInTransaction) {
+            return;
+        }
+        if (isPagedStoreOpen()) {
+            if (hasChanges) {
+                savePagedStore();
+            }
+            return;
+        }
+        if (hasChanges) {
+            saveModelToLockedStorage();
+        }
+        unlockStorage();
+    }
+
+    /**
+     * Saves the model to the storage file and advances the version stamp of the storage file.
+     * Assumption: the storage lock is held.
+     */
+    private static void saveModelToLockedStorage() {
+        savePersonsToFile(getAllPersonsInAddressBook(), storageFilePath);
+        storageWriteCount++;
+        final long newVersion = knownStorageVersion + 1;
+        writeStorageVersion(newVersion);
+        rememberStorageVersion(newVersion);
+    }
+
+    /**
+     * Locks the sidecar lock file of the storage file, waiting for other processes to release it if needed.
+     * Exits program if the lock file cannot be used.
+     */
+    private static void lockStorage() {
+        try {
+            if (storageLockChannel == null) {
+                storageLockChannel = FileChannel.open(Paths.get(storageFilePath + STORAGE_LOCK_FILE_SUFFIX),
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            storageLock = storageLockChannel.tryLock();
+            if (storageLock == null) { // held by another process
+                storageLockWaitCount++;
+                storageLock = storageLockChannel.lock();
+            }
+        } catch (IOException ioe) {
+            showToUser(String.format(MESSAGE_ERROR_WRITING_TO_FILE, storageFilePath + STORAGE_LOCK_FILE_SUFFIX));
+            exitProgram();
+        }
+    }
+
+    private static void unlockStorage() {
+        try {
+            storageLock.release();
+        } catch (IOException ioe) {
+            // the lock is released anyway when the channel is closed on exit
+        }
+        storageLock = null;
+    }
+
+    /**
+     * Returns the version stamp kept in the lock file. A new lock file has version 0.
+     * Assumption: the storage lock is held.
+     */
+    private static long readStorageVersion() {
+        final ByteBuffer versionBytes = ByteBuffer.allocate(Long.BYTES);
+        try {
+            while (versionBytes.hasRemaining()) {
+                if (storageLockChannel.read(versionBytes, versionBytes.position()) < 0) {
+                    return 0;
+                }
+            }
+        } catch (IOException ioe) {
+            showToUser(String.format(MESSAGE_ERROR_READING_FROM_FILE, storageFilePath + STORAGE_LOCK_FILE_SUFFIX));
+            exitProgram();
         }
+        versionBytes.flip();
+        return versionBytes.getLong();
     }
 
     /**
-     * Splits raw user input into command word and command arguments string
-     *
-     * @return  size 2 array; first element is the command type and second element is the arguments string
+     * Replaces the version stamp kept in the lock file.
+     * Assumption: the storage lock is held.
+     */
+    private static void writeStorageVersion(long version) {
+        final ByteBuffer versionBytes = ByteBuffer.allocate(Long.BYTES);
+        versionBytes.putLong(version).flip();
+        try {
+            while (versionBytes.hasRemaining()) {
+                storageLockChannel.write(versionBytes, versionBytes.position());
+            }
+        } catch (IOException ioe) {
+            showToUser(String.format(MESSAGE_ERROR_WRITING_TO_FILE, storageFilePath + STORAGE_LOCK_FILE_SUFFIX));
+            exitProgram();
+        }
+    }
+
+    /**
+     * Records the given version stamp, and the current size and modification time of the storage file,
+     * as the latest state of the storage file known to this process.
      */
-    private static String[] splitCommandWordAndArgs(String rawUserInput) {
-        final String[] split =  rawUserInput.trim().split("\\s+", 2);
-        return split.length == 2 ? split : new String[] { split[0] , "" }; // else case: no parameters
+    private static void rememberStorageVersion(long version) {
+        final File storageFile = new File(storageFilePath);
+        knownStorageVersion = version;
+        knownStorageFileSize = storageFile.length();
+        knownStorageFileModifiedMillis = storageFile.lastModified();
     }
 
     /**
-     * Constructs a generic feedback message for an invalid command from user, with instructions for correct usage.
+     * Returns true if the storage file was changed since this process last loaded or saved it, either by
+     * another AddressBook process (version stamp advanced) or by some other tool (file size or time changed).
+     */
+    private static boolean isStorageChangedExternally(long storageVersion) {
+        final File storageFile = new File(storageFilePath);
+        return storageVersion != knownStorageVersion
+                || storageFile.length() != knownStorageFileSize
+                || storageFile.lastModified() != knownStorageFileModifiedMillis;
+    }
+
+    /**
+     * Brings the model up to date with the content of the storage file, replacing only the persons that differ.
+     * Persons before the first difference and after the last difference are kept as they are (i.e. the same
+     * person objects stay in the model), so only the changed part of the model is rebuilt.
      *
-     * @param correctUsageInfo message showing the correct usage
-     * @return invalid command args feedback message
+     * @param filePath file to reload from
+     * @return number of persons in the storage file that were not already in the model
      */
-    private static String getMessageForInvalidCommandInput(String userCommand, String correctUsageInfo) {
-        return String.format(MESSAGE_INVALID_COMMAND_FORMAT, userCommand, correctUsageInfo);
+    private static int reloadChangedPersonsFromFile(String filePath) {
+        return replaceChangedPersonsInModel(loadPersonsFromFile(filePath));
     }
 
     /**
-     * Adds a person (specified by the command args) to the address book.
-     * The entire command arguments string is treated as a string representation of the person to add.
+     * Makes the model hold the given persons, replacing only the persons that differ.
      *
-     * @param commandArgs full command args string from the user
-     * @return feedback display message for the operation result
+     * @see #reloadChangedPersonsFromFile(String)
+     * @param reloaded the persons that the model is to hold, in order
+     * @return number of given persons that were not already in the model
      */
-    private static String executeAddPerson(String commandArgs) {
-        // try decoding a person from the raw args
-        final Optional<String[]> decodeResult = decodePersonFromString(commandArgs);
+    private static int replaceChangedPersonsInModel(ArrayList<String[]> reloaded) {
+        final ArrayList<String[]> current = getAllPersonsInAddressBook();
+        int commonPrefix = 0;
+        while (commonPrefix < current.size() && commonPrefix < reloaded.size()
+                && Arrays.equals(current.get(commonPrefix), reloaded.get(commonPrefix))) {
+            commonPrefix++;
+        }
+        int commonSuffix = 0;
+        while (commonSuffix < current.size() - commonPrefix && commonSuffix < reloaded.size() - commonPrefix
+                && Arrays.equals(current.get(current.size() - 1 - commonSuffix),
+                                 reloaded.get(reloaded.size() - 1 - commonSuffix))) {
+            commonSuffix++;
+        }
+        deletePersonsFromModel(commonPrefix, current.size() - commonSuffix);
+        insertPersonsIntoModel(commonPrefix, reloaded.subList(commonPrefix, reloaded.size() - commonSuffix));
+        forgetUndoHistory();
+        return reloaded.size() - commonPrefix - commonSuffix;
+    }
 
-        // checks if args are valid (decode result will not be present if the person is invalid)
-        if (!decodeResult.isPresent()) {
-            return getMessageForInvalidCommandInput(COMMAND_ADD_WORD, getUsageInfoForAddCommand());
+
+    /**
+     * Starts a background thread that watches the storage file for changes if watch mode is turned on
+     * through the {@link #WATCH_MODE_PROPERTY} system property.
+     */
+    private static void startWatchingStorageFileIfEnabled() {
+        if (!Boolean.getBoolean(WATCH_MODE_PROPERTY)) {
+            return;
         }
+        if (isPagedStoreOpen()) {
+            showToUser(String.format(MESSAGE_NOT_SUPPORTED_BY_PAGED_STORE, WATCH_MODE_PROPERTY));
+            return;
+        }
+        final Thread watcher = new Thread(AddressBook::watchStorageFile, "storage-file-watcher");
+        watcher.setDaemon(true); // does not keep the program alive after exit
+        watcher.start();
+    }
 
-        // add the person as specified
-        final String[] personToAdd = decodeResult.get();
-        addPersonToAddressBook(personToAdd);
-        return getMessageForSuccessfulAddPerson(personToAdd);
+    /**
+     * Waits for changes to the storage file, and hands over the decoded content of each change made by some
+     * other process to the main thread. Runs on the watcher thread until the program exits.
+     */
+    private static void watchStorageFile() {
+        final Path storageFile = Paths.get(storageFilePath).toAbsolutePath();
+        try (WatchService watchService = storageFile.getFileSystem().newWatchService()) {
+            // the directory is watched because saves replace the storage file instead of modifying it
+            storageFile.getParent().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            while (true) {
+                final WatchKey key = watchService.take();
+                if (isStorageFileAmongEvents(key, storageFile.getFileName())) {
+                    readWatchedContent(storageFile);
+                }
+                key.reset();
+            }
+        } catch (IOException | InterruptedException e) {
+            // watch mode ends quietly; changes are still picked up by the next write
+        }
+    }
+
+    private static boolean isStorageFileAmongEvents(WatchKey key, Path storageFileName) {
+        boolean isFound = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            isFound = isFound || storageFileName.equals(event.context());
+        }
+        return isFound;
     }
 
     /**
-     * Constructs a feedback message for a successful add person command execution.
-     *
-     * @see #executeAddPerson(String)
-     * @param addedPerson person who was successfully added
-     * @return successful add person feedback message
+     * Decodes the storage file on the watcher thread and hands it over to the main thread, unless the file is
+     * as this process last loaded or saved it. Content that cannot be read or decoded is skipped; the next
+     * complete save will trigger another change event.
      */
-    private static String getMessageForSuccessfulAddPerson(String[] addedPerson) {
-        return String.format(MESSAGE_ADDED,
-                getNameFromPerson(addedPerson), getPhoneFromPerson(addedPerson), getEmailFromPerson(addedPerson));
+    private static void readWatchedContent(Path storageFile) {
+        final File file = storageFile.toFile();
+        final long fileSize = file.length();
+        final long fileModifiedMillis = file.lastModified();
+        if (fileSize == knownStorageFileSize && fileModifiedMillis == knownStorageFileModifiedMillis) {
+            return; // our own save
+        }
+        try {
+            final CRC32 checksum = new CRC32();
+            final Optional<ArrayList<String[]>> decoded = readPersonsFromFile(storageFile, checksum);
+            if (decoded.isPresent()) {
+                PENDING_WATCHED_CONTENT.set(
+                        new WatchedContent(decoded.get(), fileSize, fileModifiedMillis, checksum.getValue()));
+            }
+        } catch (IOException ioe) {
+            // the file is being replaced; the replacement raises another event
+        }
     }
 
     /**
-     * Finds and lists all persons in address book whose name contains any of the argument keywords.
-     * Keyword matching is case sensitive.
-     *
-     * @param commandArgs full command args string from the user
-     * @return feedback display message for the operation result
+     * Applies the storage file content handed over by the watcher thread (if any) to the model, replacing only
+     * the persons that differ. Content that is older than the storage file on disk, or that this process has
+     * already caught up with through a write of its own, is dropped.
      */
-    private static String executeFindPersons(String commandArgs) {
-        final Set<String> keywords = extractKeywordsFromFindPersonArgs(commandArgs);
-        final ArrayList<String[]> personsFound = getPersonsWithNameContainingAnyKeyword(keywords);
-        showToUser(personsFound);
-        return getMessageForPersonsDisplayedSummary(personsFound);
+    private static void applyWatchedChangesToModel() {
+        if (isInTransaction) {
+            return; // applied after the transaction, so that a rollback cannot undo external changes
+        }
+        final WatchedContent watchedContent = PENDING_WATCHED_CONTENT.getAndSet(null);
+        if (watchedContent == null) {
+            return;
+        }
+        lockStorage();
+        final long storageVersion = readStorageVersion();
+        final File storageFile = new File(storageFilePath);
+        final boolean isWatchedContentCurrent = storageFile.length() == watchedContent.fileSize
+                && storageFile.lastModified() == watchedContent.fileModifiedMillis;
+        if (isWatchedContentCurrent && isStorageChangedExternally(storageVersion)) {
+            watchedChangeCount++;
+            final int reloadedCount = replaceChangedPersonsInModel(watchedContent.persons);
+            showToUser(String.format(MESSAGE_RELOADED_EXTERNAL_CHANGES, reloadedCount));
+            rememberStorageVersion(storageVersion);
+            knownStorageFileChecksum = watchedContent.fileChecksum;
+        }
+        unlockStorage();
     }
 
+
     /**
-     * Constructs a feedback message to summarise an operation that displayed a listing of persons.
+     * Starts serving replicas, or following a primary, as set by the {@link #REPLICATION_PORT_PROPERTY} or
+     * {@link #REPLICATION_PRIMARY_PROPERTY} system property. Exits program if the property is invalid or the
+     * port cannot be used.
+     */
+    private static void startReplicationIfEnabled() {
+        final String port = System.getProperty(REPLICATION_PORT_PROPERTY);
+        final String primaryAddress = System.getProperty(REPLICATION_PRIMARY_PROPERTY);
+        if (isPagedStoreOpen() && (port != null || primaryAddress != null)) {
+            showToUser(String.format(MESSAGE_NOT_SUPPORTED_BY_PAGED_STORE,
+                    port != null ? REPLICATION_PORT_PROPERTY : REPLICATION_PRIMARY_PROPERTY));
+            return;
+        }
+        if (port != null) {
+            startReplicationPrimary(port);
+        } else if (primaryAddress != null) {
+            startReplicationReplica(primaryAddress);
+        }
+    }
+
+    private static void startReplicationPrimary(String port) {
+        final ServerSocket serverSocket;
+        try {
+            serverSocket = new ServerSocket(Integer.parseInt(port.trim()), 0, InetAddress.getLoopbackAddress());
+        } catch (IOException | IllegalArgumentException e) {
+            showToUser(String.format(MESSAGE_ERROR_REPLICATION, REPLICATION_PORT_PROPERTY, port));
+            exitProgram();
+            return;
+        }
+        isReplicationPrimary = true;
+        replicationPort = serverSocket.getLocalPort();
+        REPLICATED_PERSONS.addAll(getAllPersonsInAddressBook());
+        final Thread server = new Thread(() -> acceptReplicas(serverSocket), "replication-server");
+        server.setDaemon(true); // does not keep the program alive after exit
+        server.start();
+        showToUser(String.format(MESSAGE_REPLICATION_PRIMARY_STARTED, replicationPort));
+    }
+
+    private static void startReplicationReplica(String primaryAddress) {
+        final int portStart = primaryAddress.lastIndexOf(':') + 1;
+        final int port;
+        try {
+            port = Integer.parseInt(primaryAddress.substring(portStart).trim());
+        } catch (NumberFormatException nfe) {
+            showToUser(String.format(MESSAGE_ERROR_REPLICATION, REPLICATION_PRIMARY_PROPERTY, primaryAddress));
+            exitProgram();
+            return;
+        }
+        final String host = portStart > 1 ? primaryAddress.substring(0, portStart - 1) : "localhost";
+        replicationPrimaryAddress = primaryAddress;
+        final Thread receiver = new Thread(() -> followPrimary(host, port), "replication-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+        showToUser(String.format(MESSAGE_REPLICATION_REPLICA_STARTED, primaryAddress));
+    }
+
+    /**
+     * Accepts connections from replicas, and starts a sender thread for each. Runs on the replication server
+     * thread until the program exits.
+     */
+    private static void acceptReplicas(ServerSocket serverSocket) {
+        try {
+            while (true) {
+                final Socket replica = serverSocket.accept();
+                final Thread sender = new Thread(() -> serveReplica(replica), "replication-sender");
+                sender.setDaemon(true);
+                sender.start();
+            }
+        } catch (IOException ioe) {
+            // replication ends quietly; replicas keep what they have
+        }
+    }
+
+    /**
+     * Ships the changes made to the full list by the latest command to the replicas as one record, unless
+     * a transaction is in progress; the changes of a transaction are shipped when it ends. The changes and
+     * reverse changes of a rolled back transaction are shipped together, so replicas end up as the primary.
+     */
+    private static void shipChangesToReplicas() {
+        if (!isReplicationPrimary || isInTransaction || CHANGES_TO_REPLICATE.isEmpty()) {
+            return;
+        }
+        synchronized (REPLICATION_LOG) {
+            final ReplicationRecord record = new ReplicationRecord(latestReplicationSequenceNumber + 1,
+                    System.currentTimeMillis(), new ArrayList<>(CHANGES_TO_REPLICATE), null);
+            for (ModelChange change : record.changes) {
+                applyChangeToList(REPLICATED_PERSONS, change);
+            }
+            REPLICATION_LOG.addLast(record);
+            if (REPLICATION_LOG.size() > REPLICATION_LOG_SIZE) {
+                REPLICATION_LOG.removeFirst();
+            }
+            latestReplicationSequenceNumber = record.sequenceNumber;
+            REPLICATION_LOG.notifyAll();
+        }
+        CHANGES_TO_REPLICATE.clear();
+    }
+
+    /**
+     * Sends a replica the records after the last one it received, then each new record as it is shipped.
+     * The replica starts by sending the id of the primary run it followed (0 if none) and the sequence number
+     * of the last record it received. Runs on a sender thread until the replica disconnects.
+     */
+    private static void serveReplica(Socket replica) {
+        connectedReplicaCount.incrementAndGet();
+        try (Socket connection = replica;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+             DataOutputStream out =
+                     new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()))) {
+            boolean isSnapshotNeeded = in.readLong() != REPLICATION_LOG_ID;
+            long sentSequenceNumber = in.readLong();
+            while (true) {
+                final ArrayList<ReplicationRecord> recordsToSend = new ArrayList<>();
+                final long latestSequenceNumber;
+                synchronized (REPLICATION_LOG) {
+                    if (!isSnapshotNeeded && sentSequenceNumber == latestReplicationSequenceNumber) {
+                        REPLICATION_LOG.wait(REPLICATION_HEARTBEAT_MILLIS);
+                    }
+                    latestSequenceNumber = latestReplicationSequenceNumber;
+                    final long oldestLoggedSequenceNumber = REPLICATION_LOG.isEmpty()
+                            ? latestSequenceNumber + 1 : REPLICATION_LOG.getFirst().sequenceNumber;
+                    if (isSnapshotNeeded || sentSequenceNumber > latestSequenceNumber
+                            || sentSequenceNumber < oldestLoggedSequenceNumber - 1) {
+                        recordsToSend.add(new ReplicationRecord(latestSequenceNumber, System.currentTimeMillis(),
+                                null, new ArrayList<>(REPLICATED_PERSONS)));
+                    } else {
+                        for (ReplicationRecord record : REPLICATION_LOG) {
+                            if (record.sequenceNumber > sentSequenceNumber) {
+                                recordsToSend.add(record);
+                            }
+                        }
+                    }
+                    isSnapshotNeeded = false;
+                }
+                if (recordsToSend.isEmpty()) {
+                    out.writeByte(REPLICATION_MESSAGE_HEARTBEAT);
+                    out.writeLong(latestSequenceNumber);
+                }
+                for (ReplicationRecord record : recordsToSend) {
+                    writeReplicationRecord(out, record);
+                    sentSequenceNumber = record.sequenceNumber;
+                }
+                out.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            // the replica reconnects, and catches up from the last record it received
+        } finally {
+            connectedReplicaCount.decrementAndGet();
+        }
+    }
+
+    private static void writeReplicationRecord(DataOutputStream out, ReplicationRecord record) throws IOException {
+        if (record.snapshot != null) {
+            out.writeByte(REPLICATION_MESSAGE_SNAPSHOT);
+            out.writeLong(REPLICATION_LOG_ID);
+        } else {
+            out.writeByte(REPLICATION_MESSAGE_RECORD);
+        }
+        out.writeLong(record.sequenceNumber);
+        out.writeLong(record.commitMillis);
+        if (record.snapshot != null) {
+            writePersons(out, record.snapshot);
+            return;
+        }
+        out.writeInt(record.changes.size());
+        for (ModelChange change : record.changes) {
+            out.writeBoolean(change.isInsertion);
+            out.writeInt(change.positions.length);
+            for (int position : change.positions) {
+                out.writeInt(position);
+            }
+            writePersons(out, change.persons);
+        }
+    }
+
+    private static void writePersons(DataOutputStream out, ArrayList<String[]> persons) throws IOException {
+        out.writeInt(persons.size());
+        for (String[] person : persons) {
+            for (String data : person) {
+                out.writeUTF(data);
+            }
+        }
+    }
+
+    /**
+     * Receives records from the primary and hands them over to the main thread, connecting again whenever the
+     * connection is lost. Runs on the receiver thread until the program exits.
+     */
+    private static void followPrimary(String host, int port) {
+        long primaryLogId = 0;
+        long receivedSequenceNumber = 0;
+        while (true) {
+            try (Socket connection = new Socket(host, port);
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+                 DataOutputStream out = new DataOutputStream(connection.getOutputStream())) {
+                out.writeLong(primaryLogId);
+                out.writeLong(receivedSequenceNumber);
+                out.flush();
+                isConnectedToPrimary = true;
+                while (true) {
+                    final byte messageType = in.readByte();
+                    if (messageType == REPLICATION_MESSAGE_HEARTBEAT) {
+                        primaryLatestSequenceNumber = in.readLong();
+                        continue;
+                    }
+                    if (messageType == REPLICATION_MESSAGE_SNAPSHOT) {
+                        primaryLogId = in.readLong();
+                    }
+                    final ReplicationRecord record = readReplicationRecord(in, messageType);
+                    receivedSequenceNumber = record.sequenceNumber;
+                    primaryLatestSequenceNumber = Math.max(primaryLatestSequenceNumber, receivedSequenceNumber);
+                    RECEIVED_REPLICATION_RECORDS.add(record);
+                }
+            } catch (IOException ioe) {
+                isConnectedToPrimary = false;
+            }
+            try {
+                Thread.sleep(REPLICATION_HEARTBEAT_MILLIS);
+            } catch (InterruptedException ie) {
+                return;
+            }
+        }
+    }
+
+    private static ReplicationRecord readReplicationRecord(DataInputStream in, byte messageType) throws IOException {
+        final long sequenceNumber = in.readLong();
+        final long commitMillis = in.readLong();
+        if (messageType == REPLICATION_MESSAGE_SNAPSHOT) {
+            return new ReplicationRecord(sequenceNumber, commitMillis, null, readPersons(in));
+        }
+        final int changeCount = in.readInt();
+        final ArrayList<ModelChange> changes = new ArrayList<>(changeCount);
+        for (int i = 0; i < changeCount; i++) {
+            final boolean isInsertion = in.readBoolean();
+            final int[] positions = new int[in.readInt()];
+            for (int j = 0; j < positions.length; j++) {
+                positions[j] = in.readInt();
+            }
+            changes.add(new ModelChange(isInsertion, positions, readPersons(in)));
+        }
+        return new ReplicationRecord(sequenceNumber, commitMillis, changes, null);
+    }
+
+    private static ArrayList<String[]> readPersons(DataInputStream in) throws IOException {
+        final int personCount = in.readInt();
+        final ArrayList<String[]> persons = new ArrayList<>(personCount);
+        for (int i = 0; i < personCount; i++) {
+            final String[] person = new String[PERSON_DATA_COUNT];
+            for (int dataIndex = 0; dataIndex < PERSON_DATA_COUNT; dataIndex++) {
+                person[dataIndex] = in.readUTF();
+            }
+            persons.add(person);
+        }
+        return persons;
+    }
+
+    /**
+     * Applies the replication records received from the primary (if any) to the model, in order.
+     * The storage file of a replica is not written, so it no longer matches the model afterwards.
+     */
+    private static void applyReplicatedChangesToModel() {
+        ReplicationRecord record;
+        while ((record = RECEIVED_REPLICATION_RECORDS.poll()) != null) {
+            if (record.snapshot != null) {
+                replaceChangedPersonsInModel(record.snapshot);
+            } else {
+                for (ModelChange change : record.changes) {
+                    applyModelChange(change);
+                }
+            }
+            appliedReplicationSequenceNumber = record.sequenceNumber;
+            latestReplicationLagMillis = Math.max(0, System.currentTimeMillis() - record.commitMillis);
+            maxReplicationLagMillis = Math.max(maxReplicationLagMillis, latestReplicationLagMillis);
+            knownStorageFileChecksum = -1;
+        }
+    }
+
+
+    /*
+     * ===========================================
+     *             PAGED STORE LOGIC
+     * ===========================================
+     */
+
+    /**
+     * Returns true if the storage file is to be used as a paged store, as chosen through the
+     * {@link #STORE_PROPERTY} system property.
+     */
+    private static boolean isPagedStoreEnabled() {
+        return STORE_PAGED.equals(System.getProperty(STORE_PROPERTY, "").trim());
+    }
+
+    private static boolean isPagedStoreOpen() {
+        return pagedStore != null;
+    }
+
+    /**
+     * Returns the memory (in bytes) to be used by the page cache, as chosen through the
+     * {@link #PAGE_CACHE_SIZE_PROPERTY} system property.
+     */
+    private static long getPageCacheBytes() {
+        long megabytes;
+        try {
+            megabytes = Math.max(0, Long.parseLong(System.getProperty(PAGE_CACHE_SIZE_PROPERTY, "").trim()));
+        } catch (NumberFormatException nfe) {
+            megabytes = DEFAULT_PAGE_CACHE_MEGABYTES;
+        }
+        return megabytes * 1024 * 1024;
+    }
+
+    /**
+     * Opens the storage file as a paged store, making it an empty one if the file is empty, and completes the
+     * latest save if it was interrupted. The file stays locked against other processes until the program exits.
+     * Shows error messages and exits program if the file is not a paged store, is used by another process, or
+     * cannot be read.
      *
-     * @param personsDisplayed used to generate summary
-     * @return summary message for persons displayed
+     * @param filePath storage file to open
+     */
+    private static void openPagedStore(String filePath) {
+        try {
+            final PagedStore store = new PagedStore(filePath, PERSON_DATA_COUNT, getPageCacheBytes());
+            if (!store.lock()) {
+                showToUser(String.format(MESSAGE_PAGED_STORE_IN_USE, filePath));
+                exitProgram();
+            }
+            if (store.hasInterruptedSave()) {
+                final boolean isRecovered = store.recoverInterruptedSave();
+                showToUser(String.format(isRecovered ? MESSAGE_RECOVERED_INTERRUPTED_SAVE
+                                                     : MESSAGE_DISCARDED_INTERRUPTED_SAVE,
+                        filePath + PagedStore.JOURNAL_FILE_SUFFIX));
+            }
+            if (!store.load()) {
+                showToUser(String.format(MESSAGE_NOT_A_PAGED_STORE, filePath));
+                exitProgram();
+            }
+            pagedStore = store;
+            personsInModel = store;
+            savePagedStore(); // a new store
+        } catch (IOException | UncheckedIOException e) {
+            showToUser(String.format(MESSAGE_ERROR_READING_FROM_FILE, filePath));
+            exitProgram();
+        }
+    }
+
+    /**
+     * Adds persons to the end of the paged store. Does not save.
      */
-    private static String getMessageForPersonsDisplayedSummary(ArrayList<String[]> personsDisplayed) {
-        return String.format(MESSAGE_PERSONS_FOUND_OVERVIEW, personsDisplayed.size());
+    private static void appendPersonsToPagedStore(List<String[]> persons) {
+        pagedStore.addAll(persons);
+        modelVersion++;
     }
 
     /**
-     * Extracts keywords from the command arguments given for the find persons command.
+     * Deletes the persons at the given positions from the paged store. Does not save.
+     * The deleted persons are not kept in memory, so the latest listing cannot show them any more; it becomes
+     * live instead, as after a clear.
      *
-     * @param findPersonCommandArgs full command args string for the find persons command
-     * @return set of keywords as specified by args
+     * @param positions ascending positions of the persons to delete
      */
-    private static Set<String> extractKeywordsFromFindPersonArgs(String findPersonCommandArgs) {
-        return new HashSet<>(splitByWhitespace(findPersonCommandArgs.trim()));
+    private static void deletePersonsFromPagedStore(int[] positions) {
+        if (positions.length == 0) {
+            return;
+        }
+        pagedStore.removeAt(positions);
+        modelVersion++;
+        isLatestListingLive = true;
+        CHANGES_SINCE_LATEST_LISTING.clear();
+    }
+
+    /**
+     * Deletes all persons in the paged store. Does not save. The latest listing becomes live, as the persons
+     * deleted are not kept in memory.
+     */
+    private static void clearPagedStore() {
+        pagedStore.clear();
+        modelVersion++;
+        isLatestListingLive = true;
+        CHANGES_SINCE_LATEST_LISTING.clear();
+    }
+
+    /**
+     * Drops the changes made to the paged store since it was last saved.
+     */
+    private static void rollbackPagedStore() {
+        pagedStore.rollback();
+        modelVersion++;
+    }
+
+    /**
+     * Saves the changes made to the paged store as a whole, forcing them to disk as the fsync policy says.
+     * Commands save once, after all their changes, so a command interrupted by a crash is dropped as a whole.
+     */
+    private static void savePagedStore() {
+        final boolean isForced = isSaveToBeForced();
+        if (!pagedStore.save(isForced)) {
+            return; // nothing changed
+        }
+        if (isForced) {
+            lastForcedSaveMillis = System.currentTimeMillis();
+        }
+        storageWriteCount++;
     }
 
     /**
-     * Retrieves all persons in the full model whose names contain some of the specified keywords.
+     * Retrieves the positions of all persons in the paged store whose names contain the text, reading the
+     * persons in order. Unlike with the full list in memory, the names are not packed, as they may not fit.
      *
-     * @param keywords for searching
-     * @return list of persons in full model with name containing some of the keywords
+     * @param text to search for; not empty
+     * @return ascending positions in full model of persons with name containing the text
      */
-    private static ArrayList<String[]> getPersonsWithNameContainingAnyKeyword(Collection<String> keywords) {
-        final ArrayList<String[]> matchedPersons = new ArrayList<>();
-        for (String[] person : getAllPersonsInAddressBook()) {
-            final Set<String> wordsInName = new HashSet<>(splitByWhitespace(getNameFromPerson(person)));
-            if (!Collections.disjoint(wordsInName, keywords)) {
-                matchedPersons.add(person);
+    private static int[] getPositionsOfPagedPersonsWithNameContainingText(String text) {
+        final Iterator<String[]> persons = getPersonIterator(0, getPersonCount());
+        int[] matchedPositions = new int[0];
+        int matchedCount = 0;
+        for (int position = 0; persons.hasNext(); position++) {
+            if (getNameFromPerson(persons.next()).contains(text)) {
+                if (matchedCount == matchedPositions.length) {
+                    matchedPositions = Arrays.copyOf(matchedPositions, Math.max(16, matchedCount * 2));
+                }
+                matchedPositions[matchedCount++] = position;
             }
         }
-        return matchedPersons;
+        return Arrays.copyOf(matchedPositions, matchedCount);
     }
 
     /**
-     * Deletes person identified using last displayed index.
+     * Returns the statistics of the paged store and its page cache shown by the stats command.
+     */
+    private static String getPagedStoreStatistics() {
+        final long pageReadCount = pagedStore.getCacheHitCount() + pagedStore.getCacheMissCount();
+        return String.format(MESSAGE_PAGED_STORE_STATISTICS, pagedStore.size(), pagedStore.getPageCount(),
+                PagedStore.PAGE_SIZE, pagedStore.getHeight(), pagedStore.getCachedPageCount(),
+                pagedStore.getCacheCapacity(), pagedStore.getCacheHitCount(), pagedStore.getCacheMissCount(),
+                pageReadCount == 0 ? 0 : pagedStore.getCacheHitCount() * 100 / pageReadCount,
+                pagedStore.getPagesReadByScansCount());
+    }
+
+
+    /*
+     * ================================================================================
+     *        INTERNAL ADDRESS BOOK DATA METHODS
+     * ================================================================================
+     */
+
+    /**
+     * Adds a person to the address book. Saves changes to storage file, unless a transaction is in progress.
      *
-     * @param commandArgs full command args string from the user
-     * @return feedback display message for the operation result
+     * @param person to add
      */
-    private static String executeDeletePerson(String commandArgs) {
-        if (!isDeletePersonArgsValid(commandArgs)) {
-            return getMessageForInvalidCommandInput(COMMAND_DELETE_WORD, getUsageInfoForDeleteCommand());
+    private static void addPersonToAddressBook(String[] person) {
+        addPersonsToAddressBook(Collections.singletonList(person));
+    }
+
+    /**
+     * Adds persons to the end of the address book. Saves changes to storage file once, unless a transaction is
+     * in progress.
+     *
+     * @param persons to add, in order
+     */
+    private static void addPersonsToAddressBook(List<String[]> persons) {
+        lockStorageForWrite();
+        if (isPagedStoreOpen()) {
+            appendPersonsToPagedStore(persons);
+        } else {
+            insertPersonsIntoModel(getPersonCount(), persons);
         }
-        final int targetVisibleIndex = extractTargetIndexFromDeletePersonArgs(commandArgs);
-        if (!isDisplayIndexValidForLastPersonListingView(targetVisibleIndex)) {
-            return MESSAGE_INVALID_PERSON_DISPLAYED_INDEX;
+        saveChangesAndUnlockStorage(!persons.isEmpty());
+    }
+
+    /**
+     * Deletes the person at the given position of the latest listing from the addressbook if it is still inside.
+     * Saves any changes to storage file, unless a transaction is in progress.
+     *
+     * @param listingPosition position in the latest listing, starting from 0
+     * @return the deleted person, or null if the person was no longer in the address book
+     */
+    private static String[] deletePersonFromAddressBook(int listingPosition) {
+        lockStorageForWrite();
+        final int position = getModelPositionInLatestListing(listingPosition);
+        final boolean changed = position >= 0;
+        final String[] deleted = changed ? getPersonAt(position) : null;
+        if (changed && isPagedStoreOpen()) {
+            deletePersonsFromPagedStore(new int[] { position });
+        } else if (changed) {
+            deletePersonsFromModel(position, position + 1);
         }
-        final String[] targetInModel = getPersonByLastVisibleIndex(targetVisibleIndex);
-        return deletePersonFromAddressBook(targetInModel) ? getMessageForSuccessfulDelete(targetInModel) // success
-                                                          : MESSAGE_PERSON_NOT_IN_ADDRESSBOOK; // not found
+        saveChangesAndUnlockStorage(changed);
+        return deleted;
     }
 
     /**
-     * Checks validity of delete person argument string's format.
+     * Deletes the persons at the given positions of the full list from the address book (from the paged store
+     * if it is used). Does not save.
      *
-     * @param rawArgs raw command args string for the delete person command
-     * @return whether the input args string is valid
+     * @param positions ascending positions of the persons to delete
      */
-    private static boolean isDeletePersonArgsValid(String rawArgs) {
-        try {
-            final int extractedIndex = Integer.parseInt(rawArgs.trim()); // use standard libraries to parse
-            return extractedIndex >= DISPLAYED_INDEX_OFFSET;
-        } catch (NumberFormatException nfe) {
-            return false;
+    private static void deletePersonsFromAddressBook(int[] positions) {
+        if (isPagedStoreOpen()) {
+            deletePersonsFromPagedStore(positions);
+        } else {
+            deletePersonsFromModel(positions);
         }
     }
 
     /**
-     * Extracts the target's index from the raw delete person args string
+     * Inserts persons into the full list, and records the change.
      *
-     * @param rawArgs raw command args string for the delete person command
-     * @return extracted index
+     * @param position in the full list to insert the first person at
+     * @param persons to insert, in order
      */
-    private static int extractTargetIndexFromDeletePersonArgs(String rawArgs) {
-        return Integer.parseInt(rawArgs.trim());
+    private static void insertPersonsIntoModel(int position, List<String[]> persons) {
+        ALL_PERSONS.addAll(position, persons);
+        recordModelChange(new ModelChange(true, makePositionRange(position, position + persons.size()),
+                new ArrayList<>(persons)));
     }
 
     /**
-     * Checks that the given index is within bounds and valid for the last shown person list view.
+     * Inserts persons into the full list at the given positions, and records the change.
+     * The full list is rebuilt in a single pass.
      *
-     * @param index to check
-     * @return whether it is valid
+     * @param positions ascending positions that the persons are to have in the full list after the insertion
+     * @param persons to insert, in the same order as their positions
      */
-    private static boolean isDisplayIndexValidForLastPersonListingView(int index) {
-        return index >= DISPLAYED_INDEX_OFFSET && index < latestPersonListingView.size() + DISPLAYED_INDEX_OFFSET;
+    private static void insertPersonsIntoModel(int[] positions, ArrayList<String[]> persons) {
+        insertPersonsIntoList(ALL_PERSONS, positions, persons);
+        recordModelChange(new ModelChange(true, positions, persons));
     }
 
     /**
-     * Constructs a feedback message for a successful delete person command execution.
-     *
-     * @see #executeDeletePerson(String)
-     * @param deletedPerson successfully deleted
-     * @return successful delete person feedback message
+     * Makes a change recorded for the full list to another list holding the same persons. A change to a range
+     * of consecutive positions (such as adding or deleting one person) moves only the persons after the range;
+     * other changes rebuild the list in a single pass.
      */
-    private static String getMessageForSuccessfulDelete(String[] deletedPerson) {
-        return String.format(MESSAGE_DELETE_PERSON_SUCCESS, getMessageForFormattedPersonData(deletedPerson));
+    private static void applyChangeToList(ArrayList<String[]> list, ModelChange change) {
+        final int[] positions = change.positions;
+        final boolean isRange = positions[positions.length - 1] - positions[0] == positions.length - 1;
+        if (change.isInsertion && isRange) {
+            list.addAll(positions[0], change.persons);
+        } else if (change.isInsertion) {
+            insertPersonsIntoList(list, positions, change.persons);
+        } else if (isRange) {
+            list.subList(positions[0], positions[0] + positions.length).clear();
+        } else {
+            deletePersonsFromList(list, positions);
+        }
     }
 
     /**
-     * Clears all persons in the address book.
+     * Inserts persons into a list at the given positions, rebuilding the list in a single pass.
      *
-     * @return feedback display message for the operation result
+     * @param positions ascending positions that the persons are to have in the list after the insertion
+     * @param persons to insert, in the same order as their positions
      */
-    private static String executeClearAddressBook() {
-        clearAddressBook();
-        return MESSAGE_ADDRESSBOOK_CLEARED;
+    private static void insertPersonsIntoList(ArrayList<String[]> list, int[] positions, List<String[]> persons) {
+        final ArrayList<String[]> merged = new ArrayList<>(list.size() + persons.size());
+        int nextExisting = 0;
+        for (int i = 0; i < positions.length; i++) {
+            while (merged.size() < positions[i]) {
+                merged.add(list.get(nextExisting++));
+            }
+            merged.add(persons.get(i));
+        }
+        merged.addAll(list.subList(nextExisting, list.size()));
+        list.clear();
+        list.addAll(merged);
     }
 
     /**
-     * Displays all persons in the address book to the user; in added order.
+     * Deletes a range of persons from the full list, and records the change.
      *
-     * @return feedback display message for the operation result
+     * @param fromPosition position of the first person to delete (inclusive)
+     * @param toPosition position of the last person to delete (exclusive)
      */
-    private static String executeListAllPersonsInAddressBook() {
-        ArrayList<String[]> toBeDisplayed = getAllPersonsInAddressBook();
-        showToUser(toBeDisplayed);
-        return getMessageForPersonsDisplayedSummary(toBeDisplayed);
+    private static void deletePersonsFromModel(int fromPosition, int toPosition) {
+        final List<String[]> deleted = ALL_PERSONS.subList(fromPosition, toPosition);
+        final ModelChange change =
+                new ModelChange(false, makePositionRange(fromPosition, toPosition), new ArrayList<>(deleted));
+        deleted.clear();
+        recordModelChange(change);
     }
 
     /**
-     * Requests to terminate the program.
+     * Deletes the persons at the given positions from the full list, and records the change.
+     * The remaining persons are moved up in a single pass over the full list.
+     *
+     * @param positions ascending positions of the persons to delete
      */
-    private static void executeExitProgramRequest() {
-        exitProgram();
+    private static void deletePersonsFromModel(int[] positions) {
+        if (positions.length == 0) {
+            return;
+        }
+        final ArrayList<String[]> deleted = deletePersonsFromList(ALL_PERSONS, positions);
+        recordModelChange(new ModelChange(false, positions, deleted));
     }
 
-    /*
-     * ===========================================
-     *               UI LOGIC
-     * ===========================================
-     */
-
     /**
-     * Prompts for the command and reads the text entered by the user.
-     * Ignores lines with first non-whitespace char equal to {@link #INPUT_COMMENT_MARKER} (considered comments)
+     * Deletes the persons at the given positions from a list, moving the remaining persons up in a single pass.
      *
-     * @return full line entered by the user
+     * @param positions ascending positions of the persons to delete
+     * @return the deleted persons, in order
      */
-    private static String getUserInput() {
-        System.out.print(LINE_PREFIX + "Enter command: ");
-        String inputLine = SCANNER.nextLine();
-        // silently consume all blank and comment lines
-        while (inputLine.trim().isEmpty() || inputLine.trim().charAt(0) == INPUT_COMMENT_MARKER) {
-            inputLine = SCANNER.nextLine();
+    private static ArrayList<String[]> deletePersonsFromList(ArrayList<String[]> list, int[] positions) {
+        final ArrayList<String[]> deleted = new ArrayList<>(positions.length);
+        int nextDeleted = 0;
+        int writePosition = 0;
+        for (int readPosition = 0; readPosition < list.size(); readPosition++) {
+            final String[] person = list.get(readPosition);
+            if (nextDeleted < positions.length && positions[nextDeleted] == readPosition) {
+                deleted.add(person);
+                nextDeleted++;
+            } else {
+                list.set(writePosition++, person);
+            }
         }
-        return inputLine;
+        list.subList(writePosition, list.size()).clear();
+        return deleted;
     }
 
-   /*
-    * NOTE : =============================================================
-    * Note how the method below uses Java 'Varargs' feature so that the
-    * method can accept a varying number of message parameters.
-    * ====================================================================
-    */
-
     /**
-     * Shows a message to the user
+     * Records a change made to the full list, so that the latest listing view can trace its persons through it,
+     * and so that it can be undone. Insertions at the end of the full list move no existing person, so they
+     * need not be traced.
      */
-    private static void showToUser(String... message) {
-        for (String m : message) {
-            System.out.println(LINE_PREFIX + m);
+    private static void recordModelChange(ModelChange change) {
+        if (change.positions.length == 0) {
+            return;
+        }
+        modelVersion++;
+        CHANGES_IN_LATEST_COMMAND.add(change);
+        updateSortedOrders(change);
+        updatePackedNames(change);
+        final boolean isAppend = change.isInsertion
+                && change.positions[0] == ALL_PERSONS.size() - change.positions.length;
+        if (!isLatestListingLive && !isAppend) {
+            CHANGES_SINCE_LATEST_LISTING.add(change);
+        }
+        if (isInTransaction) {
+            CHANGES_IN_TRANSACTION.add(change);
+        }
+        if (isReplicationPrimary) {
+            CHANGES_TO_REPLICATE.add(change);
         }
     }
 
     /**
-     * Shows the list of persons to the user.
-     * The list will be indexed, starting from 1.
-     *
+     * Brings the sorted orders up to date with a change made to the full list, in place. Persons added at the
+     * end of the full list move no other person, so each is put into its slot, found by binary search; other
+     * changes move the positions of the persons after them, so they take a pass over each order.
      */
-    private static void showToUser(ArrayList<String[]> persons) {
-        String listAsString = getDisplayString(persons);
-        showToUser(listAsString);
-        updateLatestViewedPersonListing(persons);
+    private static void updateSortedOrders(ModelChange change) {
+        if (getAllPersonsInAddressBook().isEmpty()) {
+            resetSortedOrders();
+            return;
+        }
+        final int addedCount = change.isInsertion ? change.positions.length : 0;
+        for (int dataIndex = 0; dataIndex < PERSON_DATA_COUNT; dataIndex++) {
+            if (SORTED_ORDERS[dataIndex] == null) {
+                continue; // built from the full list when first needed
+            }
+            final IntBuffer order = getChangeableSortedOrder(SORTED_ORDERS[dataIndex], addedCount);
+            if (change.isInsertion) {
+                insertIntoSortedOrder(order, change.positions, dataIndex);
+            } else {
+                deleteFromSortedOrder(order, change.positions);
+            }
+            SORTED_ORDERS[dataIndex] = order;
+        }
     }
 
     /**
-     * Returns the display string representation of the list of persons.
+     * Returns the sorted order itself if it is backed by an array with room for the given number of positions
+     * more, or else a copy of it backed by a larger array (growing by half, as {@link ArrayList} does).
      */
-    private static String getDisplayString(ArrayList<String[]> persons) {
-        final StringBuilder messageAccumulator = new StringBuilder();
-        for (int i = 0; i < persons.size(); i++) {
-            final String[] person = persons.get(i);
-            final int displayIndex = i + DISPLAYED_INDEX_OFFSET;
-            messageAccumulator.append('\t')
-                              .append(getIndexedPersonListElementMessage(displayIndex, person))
-                              .append(LS);
+    private static IntBuffer getChangeableSortedOrder(IntBuffer order, int addedCount) {
+        final int length = order.limit();
+        if (order.hasArray() && order.arrayOffset() == 0 && order.capacity() - length >= addedCount) {
+            return order;
         }
-        return messageAccumulator.toString();
+        final int[] array = new int[Math.max(length + addedCount, length + (length >> 1))];
+        order.duplicate().position(0).get(array, 0, length);
+        return IntBuffer.wrap(array).limit(length);
     }
 
     /**
-     * Constructs a prettified listing element message to represent a person and their data.
+     * Puts persons inserted into the full list into a sorted order, whose array has room for them. The
+     * positions of the persons already in it are first moved past the inserted persons, unless the persons were
+     * added at the end. Then, from the last inserted person (by value) to the first, the slot of each is found
+     * by binary search, and the persons after the slot are moved up at once; each person in the order is moved
+     * at most once.
      *
-     * @param visibleIndex visible index for this listing
-     * @param person to show
-     * @return formatted listing message with index
+     * @param insertedPositions ascending positions of the inserted persons after the insertion
      */
-    private static String getIndexedPersonListElementMessage(int visibleIndex, String[] person) {
-        return String.format(MESSAGE_DISPLAY_LIST_ELEMENT_INDEX, visibleIndex) + getMessageForFormattedPersonData(person);
+    private static void insertIntoSortedOrder(IntBuffer order, int[] insertedPositions, int personDataIndex) {
+        final int[] array = order.array();
+        final int existingCount = order.limit();
+        final boolean isAppend =
+                insertedPositions[0] == getAllPersonsInAddressBook().size() - insertedPositions.length;
+        if (!isAppend) {
+            for (int i = 0; i < existingCount; i++) {
+                array[i] = getPositionAfterInsertion(array[i], insertedPositions);
+            }
+        }
+        final int[] inserted = insertedPositions.clone();
+        sortPositionsByValue(inserted, personDataIndex);
+        int movedFrom = existingCount; // persons of the order from here on are already in place
+        for (int j = inserted.length - 1; j >= 0; j--) {
+            final int slot = countPositionsOrderedBefore(array, movedFrom, inserted[j], personDataIndex);
+            System.arraycopy(array, slot, array, slot + j + 1, movedFrom - slot);
+            array[slot + j] = inserted[j];
+            movedFrom = slot;
+        }
+        order.limit(existingCount + inserted.length);
     }
 
     /**
-     * Constructs a prettified string to show the user a person's data.
+     * Returns the number of positions at the start of the array that come before the given position in a
+     * sorted order (by value, then by position), found by binary search.
      *
-     * @param person to show
-     * @return formatted message showing internal state
+     * @param length number of positions of the sorted order at the start of the array
      */
-    private static String getMessageForFormattedPersonData(String[] person) {
-        return String.format(MESSAGE_DISPLAY_PERSON_DATA,
-                getNameFromPerson(person), getPhoneFromPerson(person), getEmailFromPerson(person));
+    private static int countPositionsOrderedBefore(int[] order, int length, int position, int personDataIndex) {
+        final ArrayList<String[]> allPersons = getAllPersonsInAddressBook();
+        final String value = allPersons.get(position)[personDataIndex];
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            final int comparison = allPersons.get(order[middle])[personDataIndex].compareTo(value);
+            if (comparison < 0 || (comparison == 0 && order[middle] < position)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
     }
 
     /**
-     * Updates the latest person listing view the user has seen.
+     * Removes persons deleted from the full list from a sorted order backed by an array, and moves the
+     * positions of the persons after them down.
      *
-     * @param newListing the new listing of persons
+     * @param deletedPositions ascending positions of the deleted persons before the deletion
      */
-    private static void updateLatestViewedPersonListing(ArrayList<String[]> newListing) {
-        // clone to insulate from future changes to arg list
-        latestPersonListingView = new ArrayList<>(newListing);
+    private static void deleteFromSortedOrder(IntBuffer order, int[] deletedPositions) {
+        final int[] array = order.array();
+        int remainingCount = 0;
+        for (int i = 0; i < order.limit(); i++) {
+            final int searchResult = Arrays.binarySearch(deletedPositions, array[i]);
+            if (searchResult < 0) {
+                final int deletedBefore = -searchResult - 1;
+                array[remainingCount++] = array[i] - deletedBefore;
+            }
+        }
+        order.limit(remainingCount);
     }
 
     /**
-     * Retrieves the person identified by the displayed index from the last shown listing of persons.
-     *
-     * @param lastVisibleIndex displayed index from last shown person listing
-     * @return the actual person object in the last shown person listing
+     * Drops all sorted orders, so that each is built again from the full list when next needed.
      */
-    private static String[] getPersonByLastVisibleIndex(int lastVisibleIndex) {
-       return latestPersonListingView.get(lastVisibleIndex - DISPLAYED_INDEX_OFFSET);
+    private static void resetSortedOrders() {
+        Arrays.fill(SORTED_ORDERS, null);
     }
 
-
-    /*
-     * ===========================================
-     *             STORAGE LOGIC
-     * ===========================================
+    /**
+     * Returns the sorted order of the given data element, building it from the full list if not yet built.
      */
+    private static IntBuffer getSortedOrder(int personDataIndex) {
+        if (SORTED_ORDERS[personDataIndex] == null) {
+            final int[] order = IntStream.range(0, getAllPersonsInAddressBook().size()).toArray();
+            sortPositionsByValue(order, personDataIndex);
+            SORTED_ORDERS[personDataIndex] = IntBuffer.wrap(order);
+        }
+        return SORTED_ORDERS[personDataIndex];
+    }
 
     /**
-     * Creates storage file if it does not exist. Shows feedback to user.
-     *
-     * @param filePath file to create if not present
+     * Sorts positions of persons in the full list by the value of a data element, and by position for persons
+     * having the same value, with a bottom-up merge sort (which needs no boxing of the positions).
      */
-    private static void createFileIfMissing(String filePath) {
-        final File storageFile = new File(filePath);
-        if (storageFile.exists()) {
-            return;
+    private static void sortPositionsByValue(int[] positions, int personDataIndex) {
+        int[] source = positions;
+        int[] target = new int[positions.length];
+        for (int width = 1; width < positions.length; width *= 2) {
+            for (int start = 0; start < positions.length; start += 2 * width) {
+                final int middle = Math.min(start + width, positions.length);
+                final int end = Math.min(start + 2 * width, positions.length);
+                mergePositionsByValue(source, start, middle, source, middle, end, target, start, personDataIndex);
+            }
+            final int[] sorted = target;
+            target = source;
+            source = sorted;
         }
-
-        showToUser(String.format(MESSAGE_ERROR_MISSING_STORAGE_FILE, filePath));
-
-        try {
-            storageFile.createNewFile();
-            showToUser(String.format(MESSAGE_STORAGE_FILE_CREATED, filePath));
-        } catch (IOException ioe) {
-            showToUser(String.format(MESSAGE_ERROR_CREATING_STORAGE_FILE, filePath));
-            exitProgram();
+        if (source != positions) {
+            System.arraycopy(source, 0, positions, 0, positions.length);
         }
     }
 
     /**
-     * Converts contents of a file into a list of persons.
-     * Shows error messages and exits program if any errors in reading or decoding was encountered.
-     *
-     * @param filePath file to load from
-     * @return the list of decoded persons
+     * Merges two runs of positions, each sorted by value and position, into the target array.
      */
-    private static ArrayList<String[]> loadPersonsFromFile(String filePath) {
-        final Optional<ArrayList<String[]>> successfullyDecoded = decodePersonsFromStrings(getLinesInFile(filePath));
-        if (!successfullyDecoded.isPresent()) {
-            showToUser(MESSAGE_INVALID_STORAGE_FILE_CONTENT);
-            exitProgram();
+    private static void mergePositionsByValue(int[] first, int firstFrom, int firstTo, int[] second, int secondFrom,
+                                              int secondTo, int[] target, int targetFrom, int personDataIndex) {
+        final ArrayList<String[]> allPersons = getAllPersonsInAddressBook();
+        int i = firstFrom;
+        int j = secondFrom;
+        int k = targetFrom;
+        while (i < firstTo && j < secondTo) {
+            final int comparison = allPersons.get(first[i])[personDataIndex]
+                    .compareTo(allPersons.get(second[j])[personDataIndex]);
+            if (comparison < 0 || (comparison == 0 && first[i] < second[j])) {
+                target[k++] = first[i++];
+            } else {
+                target[k++] = second[j++];
+            }
         }
-        return successfullyDecoded.get();
+        System.arraycopy(first, i, target, k, firstTo - i);
+        System.arraycopy(second, j, target, k + firstTo - i, secondTo - j);
     }
 
     /**
-     * Gets all lines in the specified file as a list of strings. Line separators are removed.
-     * Shows error messages and exits program if unable to read from file.
+     * Reverses a change made to the full list, restoring the full list to how it was before the change.
+     * Changes must be reversed latest first.
      */
-    private static ArrayList<String> getLinesInFile(String filePath) {
-        ArrayList<String> lines = null;
-        try {
-            lines = new ArrayList<>(Files.readAllLines(Paths.get(filePath)));
-        } catch (FileNotFoundException fnfe) {
-            showToUser(String.format(MESSAGE_ERROR_MISSING_STORAGE_FILE, filePath));
-            exitProgram();
-        } catch (IOException ioe) {
-            showToUser(String.format(MESSAGE_ERROR_READING_FROM_FILE, filePath));
-            exitProgram();
+    private static void undoModelChange(ModelChange change) {
+        final int[] positions = change.positions;
+        final boolean isRange = positions[positions.length - 1] - positions[0] == positions.length - 1;
+        if (change.isInsertion && isRange) {
+            deletePersonsFromModel(positions[0], positions[0] + positions.length);
+        } else if (change.isInsertion) {
+            deletePersonsFromModel(positions);
+        } else if (isRange) {
+            insertPersonsIntoModel(positions[0], change.persons);
+        } else {
+            insertPersonsIntoModel(positions, change.persons);
         }
-        return lines;
     }
 
     /**
-     * Saves all data to the file. Exits program if there is an error saving to file.
-     *
-     * @param filePath file for saving
+     * Makes a change recorded elsewhere (e.g. on the replication primary) to the full list, by undoing its
+     * reverse.
      */
-    private static void savePersonsToFile(ArrayList<String[]> persons, String filePath) {
-        final ArrayList<String> linesToWrite = encodePersonsToStrings(persons);
-        try {
-            Files.write(Paths.get(storageFilePath), linesToWrite);
-        } catch (IOException ioe) {
-            showToUser(String.format(MESSAGE_ERROR_WRITING_TO_FILE, filePath));
-            exitProgram();
-        }
+    private static void applyModelChange(ModelChange change) {
+        undoModelChange(new ModelChange(!change.isInsertion, change.positions, change.persons));
     }
 
-
-    /*
-     * ================================================================================
-     *        INTERNAL ADDRESS BOOK DATA METHODS
-     * ================================================================================
+    /**
+     * Returns all persons in the address book. Empty with the paged store, which does not hold the persons
+     * in memory; use {@link #getPersonAt(int)} or {@link #getPersonIterator(int, int)} instead.
      */
+    private static ArrayList<String[]> getAllPersonsInAddressBook() {
+        return ALL_PERSONS;
+    }
 
     /**
-     * Adds a person to the address book. Saves changes to storage file.
-     *
-     * @param person to add
+     * Returns the number of persons in the address book.
      */
-    private static void addPersonToAddressBook(String[] person) {
-        ALL_PERSONS.add(person);
-        savePersonsToFile(getAllPersonsInAddressBook(), storageFilePath);
+    private static int getPersonCount() {
+        return personsInModel.size();
     }
 
     /**
-     * Deletes the specified person from the addressbook if it is inside. Saves any changes to storage file.
-     *
-     * @param exactPerson the actual person inside the address book (exactPerson == the person to delete in the full list)
-     * @return true if the given person was found and deleted in the model
+     * Returns the person at the given position of the full list. With the paged store, the person is read from
+     * its page, so a new person object is returned each time.
      */
-    private static boolean deletePersonFromAddressBook(String[] exactPerson) {
-        final boolean changed = ALL_PERSONS.remove(exactPerson);
-        if (changed) {
-            savePersonsToFile(getAllPersonsInAddressBook(), storageFilePath);
-        }
-        return changed;
+    private static String[] getPersonAt(int position) {
+        return personsInModel.get(position);
     }
 
     /**
-     * Returns all persons in the address book
+     * Returns an iterator over the persons at a range of positions of the full list, in order.
+     *
+     * @param fromPosition position of the first person (inclusive)
+     * @param toPosition position of the last person (exclusive)
      */
-    private static ArrayList<String[]> getAllPersonsInAddressBook() {
-        return ALL_PERSONS;
+    private static Iterator<String[]> getPersonIterator(int fromPosition, int toPosition) {
+        return personsInModel.subList(fromPosition, toPosition).iterator();
     }
 
     /**
-     * Clears all persons in the address book and saves changes to file.
+     * Clears all persons in the address book and saves changes to file, unless a transaction is in progress.
      */
     private static void clearAddressBook() {
-        ALL_PERSONS.clear();
-        savePersonsToFile(getAllPersonsInAddressBook(), storageFilePath);
+        lockStorageForWrite();
+        if (isPagedStoreOpen()) {
+            clearPagedStore();
+        } else {
+            deletePersonsFromModel(0, ALL_PERSONS.size());
+        }
+        saveChangesAndUnlockStorage(true);
     }
 
     /**
@@ -824,6 +4593,7 @@ public class AddressBook {
     private static void initialiseAddressBookModel(ArrayList<String[]> persons) {
         ALL_PERSONS.clear();
         ALL_PERSONS.addAll(persons);
+        resetSortedOrders();
     }
 
 
@@ -883,22 +4653,9 @@ public class AddressBook {
      * @return encoded string
      */
     private static String encodePersonToString(String[] person) {
-        return String.format(PERSON_STRING_REPRESENTATION,
-                getNameFromPerson(person), getPhoneFromPerson(person), getEmailFromPerson(person));
-    }
-
-    /**
-     * Encodes list of persons into list of decodable and readable string representations.
-     *
-     * @param persons to be encoded
-     * @return encoded strings
-     */
-    private static ArrayList<String> encodePersonsToStrings(ArrayList<String[]> persons) {
-        final ArrayList<String> encoded = new ArrayList<>();
-        for (String[] person : persons) {
-            encoded.add(encodePersonToString(person));
-        }
-        return encoded;
+        final StringBuilder encoded = new StringBuilder();
+        appendTemplate(encoded, PERSON_STRING_TEMPLATE, person);
+        return encoded.toString();
     }
 
     /*
@@ -929,25 +4686,6 @@ public class AddressBook {
         return isPersonDataValid(decodedPerson) ? Optional.of(decodedPerson) : Optional.empty();
     }
 
-    /**
-     * Decodes persons from a list of string representations.
-     *
-     * @param encodedPersons strings to be decoded
-     * @return if cannot decode any: empty Optional
-     *         else: Optional containing decoded persons
-     */
-    private static Optional<ArrayList<String[]>> decodePersonsFromStrings(ArrayList<String> encodedPersons) {
-        final ArrayList<String[]> decodedPersons = new ArrayList<>();
-        for (String encodedPerson : encodedPersons) {
-            final Optional<String[]> decodedPerson = decodePersonFromString(encodedPerson);
-            if (!decodedPerson.isPresent()) {
-                return Optional.empty();
-            }
-            decodedPersons.add(decodedPerson.get());
-        }
-        return Optional.of(decodedPersons);
-    }
-
     /**
      * Returns true if person data (email, name, phone etc) can be extracted from the argument string.
      * Format is [name] p/[phone] e/[email], phone and email positions can be swapped.
@@ -955,8 +4693,7 @@ public class AddressBook {
      * @param personData person string representation
      */
     private static boolean isPersonDataExtractableFrom(String personData) {
-        final String matchAnyPersonDataPrefix = PERSON_DATA_PREFIX_PHONE + '|' + PERSON_DATA_PREFIX_EMAIL;
-        final String[] splitArgs = personData.trim().split(matchAnyPersonDataPrefix);
+        final String[] splitArgs = PERSON_DATA_PREFIX_PATTERN.split(personData.trim());
         return splitArgs.length == 3 // 3 arguments
                 && !splitArgs[0].isEmpty() // non-empty arguments
                 && !splitArgs[1].isEmpty()
@@ -1031,7 +4768,31 @@ public class AddressBook {
     private static boolean isPersonDataValid(String[] person) {
         return isPersonNameValid(person[PERSON_DATA_INDEX_NAME])
                 && isPersonPhoneValid(person[PERSON_DATA_INDEX_PHONE])
-                && isPersonEmailValid(person[PERSON_DATA_INDEX_EMAIL]);
+                && isPersonEmailValid(person[PERSON_DATA_INDEX_EMAIL])
+                && (!isPagedStoreEnabled() || PagedStore.isPersonSmallEnough(person));
+    }
+
+    /**
+     * Returns the reason the given person's data fields are not valid, if any.
+     *
+     * @param person String array representing the person (used in internal data)
+     * @return if the person is valid: empty Optional
+     *         else: Optional containing a description of the first invalid field
+     */
+    private static Optional<String> getReasonPersonDataIsInvalid(String[] person) {
+        if (!isPersonNameValid(person[PERSON_DATA_INDEX_NAME])) {
+            return Optional.of("invalid name");
+        }
+        if (!isPersonPhoneValid(person[PERSON_DATA_INDEX_PHONE])) {
+            return Optional.of("invalid phone number");
+        }
+        if (!isPersonEmailValid(person[PERSON_DATA_INDEX_EMAIL])) {
+            return Optional.of("invalid email");
+        }
+        if (isPagedStoreEnabled() && !PagedStore.isPersonSmallEnough(person)) {
+            return Optional.of("too large for a page of the paged store");
+        }
+        return Optional.empty();
     }
 
     /*
@@ -1048,7 +4809,7 @@ public class AddressBook {
      * @param name to be validated
      */
     private static boolean isPersonNameValid(String name) {
-        return name.matches("(\\w|\\s)+");  // name is nonempty mixture of alphabets and whitespace
+        return PERSON_NAME_PATTERN.matcher(name).matches();  // name is nonempty mixture of alphabets and whitespace
         //TODO: implement a more permissive validation
     }
 
@@ -1058,7 +4819,7 @@ public class AddressBook {
      * @param phone to be validated
      */
     private static boolean isPersonPhoneValid(String phone) {
-        return phone.matches("\\d+");    // phone nonempty sequence of digits
+        return PERSON_PHONE_PATTERN.matcher(phone).matches();    // phone nonempty sequence of digits
         //TODO: implement a more permissive validation
     }
 
@@ -1069,7 +4830,8 @@ public class AddressBook {
      * @return whether arg is a valid person email
      */
     private static boolean isPersonEmailValid(String email) {
-        return email.matches("\\S+@\\S+\\.\\S+"); // email is [non-whitespace]@[non-whitespace].[non-whitespace]
+        // email is [non-whitespace]@[non-whitespace].[non-whitespace]
+        return PERSON_EMAIL_PATTERN.matcher(email).matches();
         //TODO: implement a more permissive validation
     }
 
@@ -1083,10 +4845,21 @@ public class AddressBook {
     /** Returns usage info for all commands */
     private static String getUsageInfoForAllCommands() {
         return getUsageInfoForAddCommand() + LS
+                + getUsageInfoForImportCommand() + LS
+                + getUsageInfoForExportCommand() + LS
                 + getUsageInfoForFindCommand() + LS
                 + getUsageInfoForViewCommand() + LS
+                + getUsageInfoForNextCommand() + LS
+                + getUsageInfoForPrevCommand() + LS
                 + getUsageInfoForDeleteCommand() + LS
+                + getUsageInfoForDeleteMatchingCommand() + LS
                 + getUsageInfoForClearCommand() + LS
+                + getUsageInfoForUndoCommand() + LS
+                + getUsageInfoForRedoCommand() + LS
+                + getUsageInfoForBeginCommand() + LS
+                + getUsageInfoForCommitCommand() + LS
+                + getUsageInfoForRollbackCommand() + LS
+                + getUsageInfoForStatsCommand() + LS
                 + getUsageInfoForExitCommand() + LS
                 + getUsageInfoForHelpCommand();
     }
@@ -1098,18 +4871,42 @@ public class AddressBook {
                 + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_ADD_EXAMPLE) + LS;
     }
 
+    /** Returns the string for showing 'import' command usage instruction */
+    private static String getUsageInfoForImportCommand() {
+        return String.format(MESSAGE_COMMAND_HELP, COMMAND_IMPORT_WORD, COMMAND_IMPORT_DESC) + LS
+                + String.format(MESSAGE_COMMAND_HELP_PARAMETERS, COMMAND_IMPORT_PARAMETERS) + LS
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_IMPORT_EXAMPLE) + LS;
+    }
+
+    /** Returns the string for showing 'export' command usage instruction */
+    private static String getUsageInfoForExportCommand() {
+        return String.format(MESSAGE_COMMAND_HELP, COMMAND_EXPORT_WORD, COMMAND_EXPORT_DESC) + LS
+                + String.format(MESSAGE_COMMAND_HELP_PARAMETERS, COMMAND_EXPORT_PARAMETERS) + LS
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_EXPORT_EXAMPLE) + LS;
+    }
+
     /** Returns the string for showing 'find' command usage instruction */
     private static String getUsageInfoForFindCommand() {
         return String.format(MESSAGE_COMMAND_HELP, COMMAND_FIND_WORD, COMMAND_FIND_DESC) + LS
                 + String.format(MESSAGE_COMMAND_HELP_PARAMETERS, COMMAND_FIND_PARAMETERS) + LS
-                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_FIND_EXAMPLE) + LS;
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_FIND_EXAMPLE) + LS
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_FIND_TOP_EXAMPLE) + LS
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_FIND_CONTAINS_EXAMPLE) + LS;
     }
 
     /** Returns the string for showing 'delete' command usage instruction */
     private static String getUsageInfoForDeleteCommand() {
         return String.format(MESSAGE_COMMAND_HELP, COMMAND_DELETE_WORD, COMMAND_DELETE_DESC) + LS
                 + String.format(MESSAGE_COMMAND_HELP_PARAMETERS, COMMAND_DELETE_PARAMETER) + LS
-                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_DELETE_EXAMPLE) + LS;
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_DELETE_EXAMPLE) + LS
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_DELETE_MANY_EXAMPLE) + LS;
+    }
+
+    /** Returns the string for showing 'delete-matching' command usage instruction */
+    private static String getUsageInfoForDeleteMatchingCommand() {
+        return String.format(MESSAGE_COMMAND_HELP, COMMAND_DELETE_MATCHING_WORD, COMMAND_DELETE_MATCHING_DESC) + LS
+                + String.format(MESSAGE_COMMAND_HELP_PARAMETERS, COMMAND_DELETE_MATCHING_PARAMETERS) + LS
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_DELETE_MATCHING_EXAMPLE) + LS;
     }
 
     /** Returns string for showing 'clear' command usage instruction */
@@ -1118,10 +4915,61 @@ public class AddressBook {
                 + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_CLEAR_EXAMPLE) + LS;
     }
 
+    /** Returns string for showing 'undo' command usage instruction */
+    private static String getUsageInfoForUndoCommand() {
+        return String.format(MESSAGE_COMMAND_HELP, COMMAND_UNDO_WORD, COMMAND_UNDO_DESC) + LS
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_UNDO_EXAMPLE) + LS;
+    }
+
+    /** Returns string for showing 'redo' command usage instruction */
+    private static String getUsageInfoForRedoCommand() {
+        return String.format(MESSAGE_COMMAND_HELP, COMMAND_REDO_WORD, COMMAND_REDO_DESC) + LS
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_REDO_EXAMPLE) + LS;
+    }
+
+    /** Returns string for showing 'begin' command usage instruction */
+    private static String getUsageInfoForBeginCommand() {
+        return String.format(MESSAGE_COMMAND_HELP, COMMAND_BEGIN_WORD, COMMAND_BEGIN_DESC) + LS
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_BEGIN_EXAMPLE) + LS;
+    }
+
+    /** Returns string for showing 'commit' command usage instruction */
+    private static String getUsageInfoForCommitCommand() {
+        return String.format(MESSAGE_COMMAND_HELP, COMMAND_COMMIT_WORD, COMMAND_COMMIT_DESC) + LS
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_COMMIT_EXAMPLE) + LS;
+    }
+
+    /** Returns string for showing 'rollback' command usage instruction */
+    private static String getUsageInfoForRollbackCommand() {
+        return String.format(MESSAGE_COMMAND_HELP, COMMAND_ROLLBACK_WORD, COMMAND_ROLLBACK_DESC) + LS
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_ROLLBACK_EXAMPLE) + LS;
+    }
+
+    /** Returns string for showing 'stats' command usage instruction */
+    private static String getUsageInfoForStatsCommand() {
+        return String.format(MESSAGE_COMMAND_HELP, COMMAND_STATS_WORD, COMMAND_STATS_DESC) + LS
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_STATS_EXAMPLE) + LS;
+    }
+
     /** Returns the string for showing 'view' command usage instruction */
     private static String getUsageInfoForViewCommand() {
         return String.format(MESSAGE_COMMAND_HELP, COMMAND_LIST_WORD, COMMAND_LIST_DESC) + LS
-                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_LIST_EXAMPLE) + LS;
+                + String.format(MESSAGE_COMMAND_HELP_PARAMETERS, COMMAND_LIST_PARAMETERS) + LS
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_LIST_EXAMPLE) + LS
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_LIST_PAGED_EXAMPLE) + LS
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_LIST_SORTED_EXAMPLE) + LS;
+    }
+
+    /** Returns the string for showing 'next' command usage instruction */
+    private static String getUsageInfoForNextCommand() {
+        return String.format(MESSAGE_COMMAND_HELP, COMMAND_NEXT_WORD, COMMAND_NEXT_DESC) + LS
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_NEXT_EXAMPLE) + LS;
+    }
+
+    /** Returns the string for showing 'prev' command usage instruction */
+    private static String getUsageInfoForPrevCommand() {
+        return String.format(MESSAGE_COMMAND_HELP, COMMAND_PREV_WORD, COMMAND_PREV_DESC) + LS
+                + String.format(MESSAGE_COMMAND_HELP_EXAMPLE, COMMAND_PREV_EXAMPLE) + LS;
     }
 
     /** Returns string for showing 'help' command usage instruction */
@@ -1154,6 +5002,110 @@ public class AddressBook {
         return s.replace(sign, "");
     }
 
+    /**
+     * Returns true if the string is a number greater than 0 that fits in an int.
+     */
+    private static boolean isPositiveInteger(String s) {
+        try {
+            return Integer.parseInt(s) > 0;
+        } catch (NumberFormatException nfe) {
+            return false;
+        }
+    }
+
+    /**
+     * Parses a command args string made of option and value pairs, e.g. "--page 2 --size 10".
+     *
+     * @param rawArgs raw command args string
+     * @param allowedOptions names of the options that may be given, each at most once
+     * @return if the args are not all pairs of allowed options and values: empty Optional
+     *         else: Optional containing the values given, keyed by option name
+     */
+    private static Optional<HashMap<String, String>> parseOptionArgs(String rawArgs, String... allowedOptions) {
+        final HashMap<String, String> options = new HashMap<>();
+        if (rawArgs.trim().isEmpty()) {
+            return Optional.of(options);
+        }
+        final ArrayList<String> words = splitByWhitespace(rawArgs);
+        if (words.size() % 2 != 0) {
+            return Optional.empty();
+        }
+        final Set<String> allowed = new HashSet<>(Arrays.asList(allowedOptions));
+        for (int i = 0; i < words.size(); i += 2) {
+            final String option = words.get(i);
+            if (!allowed.contains(option) || options.containsKey(option)) {
+                return Optional.empty();
+            }
+            options.put(option, words.get(i + 1));
+        }
+        return Optional.of(options);
+    }
+
+    /**
+     * Breaks up a message template into its fixed text and its arguments.
+     *
+     * @param template with arguments written as '%1$s' or '%1$d' etc
+     */
+    private static CompiledTemplate compileTemplate(String template) {
+        final ArrayList<String> literals = new ArrayList<>();
+        final ArrayList<Integer> argumentIndexes = new ArrayList<>();
+        final StringBuilder literal = new StringBuilder();
+        int position = 0;
+        while (position < template.length()) {
+            final char c = template.charAt(position);
+            if (c == '%' && template.startsWith("%%", position)) {
+                literal.append('%');
+                position += 2;
+            } else if (c == '%') {
+                final int argumentEnd = template.indexOf('$', position) + 2; // past the conversion, e.g. 's'
+                argumentIndexes.add(Integer.parseInt(template.substring(position + 1, argumentEnd - 2)) - 1);
+                literals.add(literal.toString());
+                literal.setLength(0);
+                position = argumentEnd;
+            } else {
+                literal.append(c);
+                position++;
+            }
+        }
+        literals.add(literal.toString());
+        final int[] indexes = new int[argumentIndexes.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = argumentIndexes.get(i);
+        }
+        return new CompiledTemplate(literals.toArray(new String[0]), indexes);
+    }
+
+    /**
+     * Appends a compiled template to the given buffer, with its arguments taken from {@code arguments}.
+     */
+    private static void appendTemplate(StringBuilder out, CompiledTemplate template, String[] arguments) {
+        out.append(template.literals[0]);
+        for (int i = 0; i < template.argumentIndexes.length; i++) {
+            out.append(arguments[template.argumentIndexes[i]]).append(template.literals[i + 1]);
+        }
+    }
+
+    /**
+     * Appends a compiled template to the given buffer, with all its arguments being the given number.
+     */
+    private static void appendTemplate(StringBuilder out, CompiledTemplate template, int argument) {
+        out.append(template.literals[0]);
+        for (int i = 0; i < template.argumentIndexes.length; i++) {
+            out.append(argument).append(template.literals[i + 1]);
+        }
+    }
+
+    /**
+     * Returns the positions from {@code fromPosition} (inclusive) to {@code toPosition} (exclusive), in order.
+     */
+    private static int[] makePositionRange(int fromPosition, int toPosition) {
+        final int[] positions = new int[toPosition - fromPosition];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = fromPosition + i;
+        }
+        return positions;
+    }
+
     /**
      * Splits a source string into the list of substrings that were separated by whitespace.
      *
@@ -0,0 +1,1050 @@
+package seedu.addressbook;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The persons of an address book kept in a file (the paged store) instead of in memory. The file is made up
+ * of pages of a fixed size, which are read into a page cache of bounded size when needed, so the address book
+ * can be much larger than the memory of the program.
+ *
+ * The store is a list of persons in the order they were added, each person being an array of strings (its
+ * data elements). Persons are only added at the end, with {@link #add}, and deleted with {@link #removeAt}
+ * and {@link #clear}; the other ways of changing a list are not supported. Changes are saved as a whole with
+ * {@link #save}, or dropped with {@link #rollback}. Errors reading or writing the file are thrown as
+ * {@link UncheckedIOException}, as they can happen while iterating.
+ *
+ * The persons are kept in order in a B+-tree whose internal pages hold the number of persons under each child
+ * instead of keys, so that the person at a position of the list is found by descending from the root. All
+ * numbers in the file are big-endian.
+ *    page 0 (header) : magic number, format version, page size, number of pages, root page, height of
+ *                      the tree, number of persons (int each)
+ *    leaf page       : type, number of persons, offset just past the last person (byte, short, short),
+ *                      then the data elements of each person, each as its UTF-8 length and bytes
+ *                      (short, bytes)
+ *    internal page   : type, number of children (byte, short), then the page number of each child and the
+ *                      number of persons under it (int, int)
+ * Pages not used by the tree are free, and are found when the store is loaded by reading its internal pages.
+ *
+ * The pages used by the saved store are never written to until the next save is complete: a page is changed
+ * in a copy of it on a free page (copy on write), and so is its parent, up to the root. A save writes the
+ * changed pages, and then the header, which switches the store to the new root at once. Hence the file always
+ * holds the store as of the latest save, however many pages are changed, and changed pages can be written out
+ * to keep the page cache within its capacity. The cost is that the file holds both the saved pages and their
+ * changed copies until the save, so a change to most persons can double the size of the file. The header is
+ * first written to a journal file next to the store, so that a save interrupted while writing it can be
+ * completed. The journal holds a magic number and the number of pages in it (int, int), then the number (int)
+ * and the bytes of each page, and ends with the CRC-32 checksum of everything before it (long).
+ */
+final class PagedStore extends AbstractList<String[]> {
+
+    /**
+     * Suffix of the journal file, next to the store.
+     */
+    static final String JOURNAL_FILE_SUFFIX = ".journal";
+
+    static final int PAGE_SIZE = 8192;
+    private static final int MIN_CACHE_PAGES = 64;
+
+    private static final int MAGIC = 0x41425053; // "ABPS"
+    private static final int FORMAT_VERSION = 2;
+    private static final int JOURNAL_MAGIC = 0x4142504A; // "ABPJ"
+    private static final int HEADER_PAGE_COUNT_OFFSET = 3 * Integer.BYTES;
+    private static final int HEADER_ROOT_PAGE_OFFSET = 4 * Integer.BYTES;
+    private static final int HEADER_HEIGHT_OFFSET = 5 * Integer.BYTES;
+    private static final int HEADER_PERSON_COUNT_OFFSET = 6 * Integer.BYTES;
+    private static final byte PAGE_TYPE_LEAF = 1;
+    private static final byte PAGE_TYPE_INTERNAL = 2;
+    private static final int PAGE_TYPE_SIZE = 1;
+    private static final int LEAF_END_OFFSET = PAGE_TYPE_SIZE + Short.BYTES;
+    private static final int LEAF_HEADER_SIZE = LEAF_END_OFFSET + Short.BYTES;
+    private static final int INTERNAL_HEADER_SIZE = PAGE_TYPE_SIZE + Short.BYTES;
+    private static final int INTERNAL_ENTRY_SIZE = 2 * Integer.BYTES;
+    private static final int MAX_CHILDREN_PER_PAGE = (PAGE_SIZE - INTERNAL_HEADER_SIZE) / INTERNAL_ENTRY_SIZE;
+
+    /**
+     * A page of the store held in memory. A page is dirty if it was changed since it was last written.
+     */
+    private static final class Page {
+        final int number;
+        final ByteBuffer bytes;
+        boolean isDirty = false;
+
+        Page(int number, ByteBuffer bytes) {
+            this.number = number;
+            this.bytes = bytes;
+        }
+    }
+
+    private final FileChannel channel;
+    private final Path journalPath;
+    private FileChannel journalChannel; // opened when first needed
+    private FileLock lock;
+
+    /** Number of data elements of each person. */
+    private final int personDataCount;
+
+    /** Maximum number of pages in the page cache. */
+    private final int cacheCapacity;
+
+    /**
+     * The header of the store as it is in memory, and as of the latest save.
+     */
+    private int pageCount;
+    private int rootPage;
+    private int height;
+    private int personCount;
+    private int savedPageCount;
+    private int savedRootPage;
+    private int savedHeight;
+    private int savedPersonCount;
+
+    /**
+     * Pages (below the number of pages) that are used neither by the saved store nor by the changes since,
+     * pages allocated since the latest save, and pages of the saved store that the changes since no longer use.
+     * The last are only free once the next save is complete.
+     */
+    private final BitSet freePages = new BitSet();
+    private final BitSet newPages = new BitSet();
+    private final BitSet pagesFreedBySave = new BitSet();
+
+    /**
+     * Pages in the page cache, least recently used first, by page number.
+     */
+    private final LinkedHashMap<Integer, Page> cachedPages = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Counters shown by the stats command
+    private long cacheHitCount = 0;
+    private long cacheMissCount = 0;
+    private long pagesReadByScansCount = 0;
+
+    /**
+     * Opens a file to be used as a paged store. The store cannot be used until it is {@link #load loaded}.
+     *
+     * @param filePath of the store; the file must exist
+     * @param personDataCount number of data elements of each person
+     * @param cacheBytes memory to be used by the page cache
+     */
+    PagedStore(String filePath, int personDataCount, long cacheBytes) throws IOException {
+        channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        journalPath = Paths.get(filePath + JOURNAL_FILE_SUFFIX);
+        this.personDataCount = personDataCount;
+        cacheCapacity = (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_CACHE_PAGES, cacheBytes / PAGE_SIZE));
+    }
+
+    /**
+     * Locks the file against other processes until the program exits.
+     *
+     * @return false if another process holds the lock
+     */
+    boolean lock() throws IOException {
+        lock = channel.tryLock();
+        return lock != null;
+    }
+
+    /**
+     * Returns true if the journal holds pages of a save that was interrupted.
+     */
+    boolean hasInterruptedSave() throws IOException {
+        return Files.exists(journalPath) && Files.size(journalPath) > 0;
+    }
+
+    /**
+     * Completes a save that was interrupted after its journal was written, by writing the pages in the journal
+     * in place. A journal that is incomplete (its save was interrupted before the journal was written) is
+     * discarded, as the store still holds the last completed save.
+     *
+     * @return true if the save was completed; false if it was discarded
+     */
+    boolean recoverInterruptedSave() throws IOException {
+        final FileChannel journal = getJournalChannel();
+        final boolean isComplete = isJournalComplete(journal.size());
+        if (isComplete) {
+            journal.position(0);
+            final DataInputStream input = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(journal), PAGE_SIZE));
+            input.readInt(); // magic number
+            final int journaledPageCount = input.readInt();
+            for (int i = 0; i < journaledPageCount; i++) {
+                final int pageNumber = input.readInt();
+                final ByteBuffer bytes = ByteBuffer.allocate(PAGE_SIZE);
+                input.readFully(bytes.array());
+                writePageToFile(new Page(pageNumber, bytes));
+            }
+            channel.force(false);
+        }
+        journal.truncate(0);
+        return isComplete;
+    }
+
+    /**
+     * Returns true if the journal has the size its page count says, and ends with the checksum of its content.
+     */
+    private boolean isJournalComplete(long journalSize) throws IOException {
+        if (journalSize < 2 * Integer.BYTES + Long.BYTES) {
+            return false;
+        }
+        journalChannel.position(0);
+        final CheckedInputStream checkedInput = new CheckedInputStream(new BufferedInputStream(
+                Channels.newInputStream(journalChannel), PAGE_SIZE), new CRC32());
+        final DataInputStream journal = new DataInputStream(checkedInput);
+        final int magic = journal.readInt();
+        final int journaledPageCount = journal.readInt();
+        final long expectedSize = 2 * Integer.BYTES + journaledPageCount * (Integer.BYTES + (long) PAGE_SIZE)
+                + Long.BYTES;
+        if (magic != JOURNAL_MAGIC || journaledPageCount < 0 || journalSize != expectedSize) {
+            return false;
+        }
+        final byte[] page = new byte[Integer.BYTES + PAGE_SIZE];
+        for (int i = 0; i < journaledPageCount; i++) {
+            journal.readFully(page);
+        }
+        final long computedChecksum = checkedInput.getChecksum().getValue();
+        return journal.readLong() == computedChecksum;
+    }
+
+    private FileChannel getJournalChannel() throws IOException {
+        if (journalChannel == null) {
+            journalChannel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        }
+        return journalChannel;
+    }
+
+    /**
+     * Reads the header of the store. If the file is empty, the store is made empty instead; it is written to
+     * the file by the next save.
+     *
+     * @return false if the file is not a paged store
+     */
+    boolean load() throws IOException {
+        if (isFileNew()) {
+            channel.truncate(0);
+            pageCount = 1; // the header
+            height = 1;
+            rootPage = allocatePage(PAGE_TYPE_LEAF).number;
+            return true;
+        }
+        if (!readHeader()) {
+            return false;
+        }
+        findFreePages();
+        return true;
+    }
+
+    /**
+     * Returns true if the file is empty, or if its header was never written (the file was being made into a
+     * paged store when the program stopped).
+     */
+    private boolean isFileNew() throws IOException {
+        final int headerSize = (int) Math.min(channel.size(), PAGE_SIZE);
+        final ByteBuffer header = ByteBuffer.allocate(headerSize);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // read until the buffer is full
+        }
+        for (int i = 0; i < headerSize; i++) {
+            if (header.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the header of the store into the variables holding it.
+     *
+     * @return false if the file does not start with the header of a paged store
+     */
+    private boolean readHeader() throws IOException {
+        if (channel.size() < PAGE_SIZE) {
+            return false;
+        }
+        final ByteBuffer header = readPageFromFile(0, ByteBuffer.allocate(PAGE_SIZE));
+        if (header.getInt(0) != MAGIC || header.getInt(Integer.BYTES) != FORMAT_VERSION
+                || header.getInt(2 * Integer.BYTES) != PAGE_SIZE) {
+            return false;
+        }
+        pageCount = savedPageCount = header.getInt(HEADER_PAGE_COUNT_OFFSET);
+        rootPage = savedRootPage = header.getInt(HEADER_ROOT_PAGE_OFFSET);
+        height = savedHeight = header.getInt(HEADER_HEIGHT_OFFSET);
+        personCount = savedPersonCount = header.getInt(HEADER_PERSON_COUNT_OFFSET);
+        return true;
+    }
+
+    /**
+     * Finds the pages that the tree does not use, by reading its internal pages a level at a time.
+     */
+    private void findFreePages() {
+        freePages.set(1, pageCount);
+        freePages.clear(rootPage);
+        int[] levelPages = { rootPage };
+        for (int level = 0; level < height - 1; level++) {
+            int[] childPages = new int[0];
+            int childCount = 0;
+            for (int pageNumber : levelPages) {
+                evictPagesIfNeeded();
+                final Page internal = getPage(pageNumber);
+                for (int i = 0; i < getChildCount(internal); i++) {
+                    freePages.clear(getChildPage(internal, i));
+                    if (childCount == childPages.length) {
+                        childPages = Arrays.copyOf(childPages, Math.max(16, childCount * 2));
+                    }
+                    childPages[childCount++] = getChildPage(internal, i);
+                }
+            }
+            levelPages = Arrays.copyOf(childPages, childCount);
+        }
+    }
+
+    /**
+     * Returns true if the person fits in a leaf page of a paged store.
+     */
+    static boolean isPersonSmallEnough(String[] person) {
+        return encodePerson(person).length <= PAGE_SIZE - LEAF_HEADER_SIZE;
+    }
+
+    @Override
+    public int size() {
+        return personCount;
+    }
+
+    /**
+     * Reads the person at the given position, descending from the root through the page cache. A new person
+     * object is returned each time.
+     */
+    @Override
+    public String[] get(int index) {
+        if (index < 0 || index >= personCount) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + personCount);
+        }
+        evictPagesIfNeeded();
+        final int[] positionUnderPage = { index };
+        Page page = getPage(rootPage);
+        for (int level = 0; level < height - 1; level++) {
+            page = getPage(getChildPage(page, findChildHoldingPosition(page, positionUnderPage)));
+        }
+        return decodePerson(page.bytes, getLeafPersonOffset(page, positionUnderPage[0]));
+    }
+
+    @Override
+    public Iterator<String[]> iterator() {
+        return listIterator(0);
+    }
+
+    /**
+     * Returns an iterator over the persons from the given position on. It only moves forward.
+     */
+    @Override
+    public ListIterator<String[]> listIterator(int index) {
+        if (index < 0 || index > personCount) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + personCount);
+        }
+        return new PersonIterator(index);
+    }
+
+    /**
+     * Adds a person at the end of the store; persons cannot be added anywhere else.
+     */
+    @Override
+    public void add(int index, String[] person) {
+        if (index != personCount) {
+            throw new UnsupportedOperationException("Persons are only added at the end of a paged store");
+        }
+        appendPerson(encodePerson(person));
+        modCount++;
+    }
+
+    /**
+     * Deletes the persons at the given positions, last first so that the positions of the others do not move.
+     *
+     * @param positions ascending positions of the persons to delete
+     */
+    void removeAt(int[] positions) {
+        for (int i = positions.length - 1; i >= 0; i--) {
+            deletePerson(positions[i]);
+        }
+        modCount++;
+    }
+
+    /**
+     * Deletes all persons. The file is shortened to its header and root page when saved.
+     */
+    @Override
+    public void clear() {
+        for (int pageNumber = 1; pageNumber < pageCount; pageNumber++) {
+            if (newPages.get(pageNumber)) {
+                freePages.set(pageNumber);
+            } else if (!freePages.get(pageNumber)) {
+                pagesFreedBySave.set(pageNumber);
+            }
+        }
+        newPages.clear();
+        cachedPages.clear();
+        height = 1;
+        personCount = 0;
+        rootPage = allocatePage(PAGE_TYPE_LEAF).number;
+        modCount++;
+    }
+
+    /*
+     * NOTE : =============================================================================================
+     * The methods below keep the page cache. Pages are read into it when needed, and the least recently used
+     * pages are evicted once it is full, dirty pages being written to the file first. Pages are only evicted
+     * between the changes to single persons, so that no page is evicted while it is being changed.
+     * ====================================================================================================
+     */
+
+    /**
+     * Returns the page with the given number, from the page cache if it holds the page. Otherwise reads the
+     * page from the file into the cache.
+     */
+    private Page getPage(int pageNumber) {
+        Page page = cachedPages.get(pageNumber);
+        if (page != null) {
+            cacheHitCount++;
+            return page;
+        }
+        cacheMissCount++;
+        page = new Page(pageNumber, readPageFromFile(pageNumber, ByteBuffer.allocate(PAGE_SIZE)));
+        cachedPages.put(pageNumber, page);
+        return page;
+    }
+
+    /**
+     * Returns the page with the given number, ready to be changed: the page itself if it was allocated since
+     * the latest save, or else a copy of it on a new page, as the saved store still uses it. The caller must
+     * put the number of the copy in place of the number of the page.
+     */
+    private Page getPageForUpdate(int pageNumber) {
+        final Page page = getPage(pageNumber);
+        if (newPages.get(pageNumber)) {
+            page.isDirty = true;
+            return page;
+        }
+        final Page copy = allocatePage(page.bytes.get(0));
+        System.arraycopy(page.bytes.array(), 0, copy.bytes.array(), 0, PAGE_SIZE);
+        cachedPages.remove(pageNumber);
+        pagesFreedBySave.set(pageNumber);
+        return copy;
+    }
+
+    private Page getRootForUpdate() {
+        final Page root = getPageForUpdate(rootPage);
+        rootPage = root.number;
+        return root;
+    }
+
+    /**
+     * Returns the child at the given index of an internal page, ready to be changed. The internal page must
+     * be ready to be changed as well.
+     */
+    private Page getChildForUpdate(Page internal, int index) {
+        final Page child = getPageForUpdate(getChildPage(internal, index));
+        setChildPage(internal, index, child.number);
+        return child;
+    }
+
+    /**
+     * Evicts the least recently used pages until the page cache holds no more pages than its capacity, writing
+     * the dirty ones to the file first. Dirty pages were allocated since the latest save, so the saved store
+     * does not use them.
+     */
+    private void evictPagesIfNeeded() {
+        final Iterator<Page> leastRecentlyUsed = cachedPages.values().iterator();
+        while (cachedPages.size() > cacheCapacity && leastRecentlyUsed.hasNext()) {
+            final Page page = leastRecentlyUsed.next();
+            if (page.isDirty) {
+                writePageToFile(page);
+            }
+            leastRecentlyUsed.remove();
+        }
+    }
+
+    /**
+     * Reads a page from the file into the buffer. Bytes past the end of the file are read as zeros.
+     *
+     * @return the buffer
+     */
+    private ByteBuffer readPageFromFile(int pageNumber, ByteBuffer buffer) {
+        try {
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, (long) pageNumber * PAGE_SIZE + buffer.position()) < 0) {
+                    Arrays.fill(buffer.array(), buffer.position(), PAGE_SIZE, (byte) 0);
+                    break;
+                }
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        return buffer;
+    }
+
+    private void writePageToFile(Page page) {
+        try {
+            final ByteBuffer bytes = ByteBuffer.wrap(page.bytes.array());
+            while (bytes.hasRemaining()) {
+                channel.write(bytes, (long) page.number * PAGE_SIZE + bytes.position());
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        page.isDirty = false;
+    }
+
+    /**
+     * Returns a new dirty page of the given type, on the first free page if there is one, or else at the end
+     * of the file.
+     */
+    private Page allocatePage(byte pageType) {
+        int pageNumber = freePages.nextSetBit(0);
+        if (pageNumber < 0) {
+            pageNumber = pageCount++;
+        } else {
+            freePages.clear(pageNumber);
+        }
+        newPages.set(pageNumber);
+        final Page page = new Page(pageNumber, ByteBuffer.allocate(PAGE_SIZE));
+        page.bytes.put(0, pageType);
+        if (pageType == PAGE_TYPE_LEAF) {
+            page.bytes.putShort(LEAF_END_OFFSET, (short) LEAF_HEADER_SIZE);
+        }
+        page.isDirty = true;
+        cachedPages.put(pageNumber, page);
+        return page;
+    }
+
+    /**
+     * Frees a page that the tree no longer uses. A page of the saved store is only free once the next save
+     * is complete.
+     */
+    private void freePage(Page page) {
+        cachedPages.remove(page.number);
+        if (newPages.get(page.number)) {
+            newPages.clear(page.number);
+            freePages.set(page.number);
+        } else {
+            pagesFreedBySave.set(page.number);
+        }
+    }
+
+    /*
+     * NOTE : =============================================================================================
+     * The methods below read and change leaf and internal pages in place. Persons in a leaf are found by
+     * skipping the ones before them, as they differ in length; a leaf holds about a hundred persons, so this
+     * costs less than reading another page would.
+     * ====================================================================================================
+     */
+
+    private static int getLeafPersonCount(Page leaf) {
+        return leaf.bytes.getShort(PAGE_TYPE_SIZE);
+    }
+
+    /**
+     * Returns the offset in the leaf just past its last person.
+     */
+    private static int getLeafEnd(Page leaf) {
+        return leaf.bytes.getShort(LEAF_END_OFFSET);
+    }
+
+    /**
+     * Returns the offset in the leaf of the person at the given index in it.
+     */
+    private int getLeafPersonOffset(Page leaf, int index) {
+        int offset = LEAF_HEADER_SIZE;
+        for (int i = 0; i < index; i++) {
+            offset = skipPerson(leaf.bytes, offset);
+        }
+        return offset;
+    }
+
+    /**
+     * Returns the offset just past the person encoded at the given offset of a leaf.
+     */
+    private int skipPerson(ByteBuffer leafBytes, int offset) {
+        int end = offset;
+        for (int i = 0; i < personDataCount; i++) {
+            end += Short.BYTES + leafBytes.getShort(end);
+        }
+        return end;
+    }
+
+    /**
+     * Decodes the person encoded at the given offset of a leaf.
+     */
+    private String[] decodePerson(ByteBuffer leafBytes, int offset) {
+        final String[] person = new String[personDataCount];
+        int fieldOffset = offset;
+        for (int i = 0; i < personDataCount; i++) {
+            final int length = leafBytes.getShort(fieldOffset);
+            person[i] = new String(leafBytes.array(), fieldOffset + Short.BYTES, length, StandardCharsets.UTF_8);
+            fieldOffset += Short.BYTES + length;
+        }
+        return person;
+    }
+
+    /**
+     * Encodes a person the way persons are held in a leaf: each data element as its UTF-8 length and bytes.
+     */
+    private static byte[] encodePerson(String[] person) {
+        final byte[][] fields = new byte[person.length][];
+        int length = 0;
+        for (int i = 0; i < person.length; i++) {
+            fields[i] = person[i].getBytes(StandardCharsets.UTF_8);
+            length += Short.BYTES + fields[i].length;
+        }
+        final ByteBuffer encoded = ByteBuffer.allocate(length);
+        for (byte[] field : fields) {
+            encoded.putShort((short) field.length).put(field);
+        }
+        return encoded.array();
+    }
+
+    private static void appendToLeaf(Page leaf, byte[] encodedPerson) {
+        final int end = getLeafEnd(leaf);
+        System.arraycopy(encodedPerson, 0, leaf.bytes.array(), end, encodedPerson.length);
+        leaf.bytes.putShort(PAGE_TYPE_SIZE, (short) (getLeafPersonCount(leaf) + 1));
+        leaf.bytes.putShort(LEAF_END_OFFSET, (short) (end + encodedPerson.length));
+    }
+
+    /**
+     * Removes the person at the given offset from the leaf, moving the persons after it up.
+     */
+    private void removeFromLeaf(Page leaf, int offset) {
+        final int personEnd = skipPerson(leaf.bytes, offset);
+        final int end = getLeafEnd(leaf);
+        final int newEnd = end - (personEnd - offset);
+        System.arraycopy(leaf.bytes.array(), personEnd, leaf.bytes.array(), offset, end - personEnd);
+        Arrays.fill(leaf.bytes.array(), newEnd, end, (byte) 0);
+        leaf.bytes.putShort(PAGE_TYPE_SIZE, (short) (getLeafPersonCount(leaf) - 1));
+        leaf.bytes.putShort(LEAF_END_OFFSET, (short) newEnd);
+    }
+
+    private static int getChildCount(Page internal) {
+        return internal.bytes.getShort(PAGE_TYPE_SIZE);
+    }
+
+    private static int getChildPage(Page internal, int index) {
+        return internal.bytes.getInt(INTERNAL_HEADER_SIZE + index * INTERNAL_ENTRY_SIZE);
+    }
+
+    private static void setChildPage(Page internal, int index, int childPage) {
+        internal.bytes.putInt(INTERNAL_HEADER_SIZE + index * INTERNAL_ENTRY_SIZE, childPage);
+    }
+
+    /**
+     * Returns the number of persons under the child at the given index of an internal page.
+     */
+    private static int getChildPersonCount(Page internal, int index) {
+        return internal.bytes.getInt(INTERNAL_HEADER_SIZE + index * INTERNAL_ENTRY_SIZE + Integer.BYTES);
+    }
+
+    private static void addToChildPersonCount(Page internal, int index, int delta) {
+        final int offset = INTERNAL_HEADER_SIZE + index * INTERNAL_ENTRY_SIZE + Integer.BYTES;
+        internal.bytes.putInt(offset, internal.bytes.getInt(offset) + delta);
+    }
+
+    private static void appendChild(Page internal, int childPage, int childPersonCount) {
+        final int childCount = getChildCount(internal);
+        final int offset = INTERNAL_HEADER_SIZE + childCount * INTERNAL_ENTRY_SIZE;
+        internal.bytes.putInt(offset, childPage);
+        internal.bytes.putInt(offset + Integer.BYTES, childPersonCount);
+        internal.bytes.putShort(PAGE_TYPE_SIZE, (short) (childCount + 1));
+    }
+
+    /**
+     * Removes the child at the given index from an internal page, moving the children after it up.
+     */
+    private static void removeChild(Page internal, int index) {
+        final int childCount = getChildCount(internal);
+        final int offset = INTERNAL_HEADER_SIZE + index * INTERNAL_ENTRY_SIZE;
+        final int end = INTERNAL_HEADER_SIZE + childCount * INTERNAL_ENTRY_SIZE;
+        System.arraycopy(internal.bytes.array(), offset + INTERNAL_ENTRY_SIZE, internal.bytes.array(), offset,
+                end - offset - INTERNAL_ENTRY_SIZE);
+        Arrays.fill(internal.bytes.array(), end - INTERNAL_ENTRY_SIZE, end, (byte) 0);
+        internal.bytes.putShort(PAGE_TYPE_SIZE, (short) (childCount - 1));
+    }
+
+    /**
+     * Returns the index of the child of an internal page that holds the person at the given position under
+     * the page, and sets the position to the position of that person under the child.
+     *
+     * @param position size 1 array; its element is the position under the page, changed to the position
+     *                 under the child
+     */
+    private static int findChildHoldingPosition(Page internal, int[] position) {
+        int index = 0;
+        while (position[0] >= getChildPersonCount(internal, index)) {
+            position[0] -= getChildPersonCount(internal, index);
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Appends an encoded person to the last leaf of the tree, or to a new leaf after it if the last leaf is
+     * full. A new page is added to the parent in the same way, up to the root; if the root is full as well,
+     * a new root is made above it. As persons are only ever added at the end, pages are split by starting
+     * a new page, and full pages stay full.
+     */
+    private void appendPerson(byte[] encodedPerson) {
+        evictPagesIfNeeded();
+        final int[] pathPages = new int[height]; // from the root down to the last leaf
+        Page page = getRootForUpdate();
+        for (int level = 0; level < height - 1; level++) {
+            pathPages[level] = page.number;
+            page = getChildForUpdate(page, getChildCount(page) - 1);
+        }
+        // page of a new subtree right of the path, holding only the new person; 0 if the person fit in the path
+        int newSubtreePage = 0;
+        if (getLeafEnd(page) + encodedPerson.length <= PAGE_SIZE) {
+            appendToLeaf(page, encodedPerson);
+        } else {
+            final Page newLeaf = allocatePage(PAGE_TYPE_LEAF);
+            appendToLeaf(newLeaf, encodedPerson);
+            newSubtreePage = newLeaf.number;
+        }
+        for (int level = height - 2; level >= 0; level--) {
+            final Page parent = getPage(pathPages[level]);
+            if (newSubtreePage == 0) {
+                addToChildPersonCount(parent, getChildCount(parent) - 1, 1);
+            } else if (getChildCount(parent) < MAX_CHILDREN_PER_PAGE) {
+                appendChild(parent, newSubtreePage, 1);
+                newSubtreePage = 0;
+            } else {
+                final Page newInternal = allocatePage(PAGE_TYPE_INTERNAL);
+                appendChild(newInternal, newSubtreePage, 1);
+                newSubtreePage = newInternal.number;
+            }
+        }
+        if (newSubtreePage != 0) {
+            final Page newRoot = allocatePage(PAGE_TYPE_INTERNAL);
+            appendChild(newRoot, rootPage, personCount);
+            appendChild(newRoot, newSubtreePage, 1);
+            rootPage = newRoot.number;
+            height++;
+        }
+        personCount++;
+    }
+
+    /**
+     * Deletes the person at the given position. A page left empty is freed and removed from its parent, and
+     * a root left with a single child is replaced by that child. Pages that are not empty are not merged with
+     * their neighbours, so deleting many persons can leave pages partly used.
+     */
+    private void deletePerson(int position) {
+        evictPagesIfNeeded();
+        final int[] pathPages = new int[height];
+        final int[] pathChildIndexes = new int[height];
+        final int[] positionUnderPage = { position };
+        Page page = getRootForUpdate();
+        for (int level = 0; level < height - 1; level++) {
+            pathPages[level] = page.number;
+            pathChildIndexes[level] = findChildHoldingPosition(page, positionUnderPage);
+            addToChildPersonCount(page, pathChildIndexes[level], -1);
+            page = getChildForUpdate(page, pathChildIndexes[level]);
+        }
+        removeFromLeaf(page, getLeafPersonOffset(page, positionUnderPage[0]));
+        personCount--;
+
+        Page emptiedPage = getLeafPersonCount(page) == 0 ? page : null;
+        for (int level = height - 2; level >= 0 && emptiedPage != null; level--) {
+            freePage(emptiedPage);
+            final Page parent = getPage(pathPages[level]);
+            removeChild(parent, pathChildIndexes[level]);
+            emptiedPage = getChildCount(parent) == 0 ? parent : null;
+        }
+        if (emptiedPage != null && height > 1) { // the last person was deleted
+            freePage(emptiedPage);
+            rootPage = allocatePage(PAGE_TYPE_LEAF).number;
+            height = 1;
+        }
+        while (height > 1 && getChildCount(getPage(rootPage)) == 1) {
+            final Page oldRoot = getPage(rootPage);
+            rootPage = getChildPage(oldRoot, 0);
+            height--;
+            freePage(oldRoot);
+        }
+    }
+
+    /**
+     * Iterates over the persons from a position on, in order, a leaf at a time. The path of internal pages from
+     * the root to the current leaf is kept, so the next leaf is found by going up to the first page that has
+     * a next child, and down its leftmost pages. Leaves that are not in the page cache are read into a buffer of
+     * the iterator instead of the cache, so that a scan through the whole store does not evict the pages that
+     * are used most.
+     */
+    private final class PersonIterator implements ListIterator<String[]> {
+        private final int[] pathPages = new int[height];
+        private final int[] pathChildIndexes = new int[height];
+        private final ByteBuffer leafBuffer = ByteBuffer.allocate(PAGE_SIZE);
+        private ByteBuffer leafBytes;
+        private int personOffset;
+        private int nextPosition;
+
+        PersonIterator(int fromPosition) {
+            nextPosition = fromPosition;
+            if (fromPosition == personCount) {
+                return;
+            }
+            final int[] positionUnderPage = { fromPosition };
+            int pageNumber = rootPage;
+            for (int level = 0; level < height - 1; level++) {
+                final Page internal = getPage(pageNumber);
+                pathPages[level] = pageNumber;
+                pathChildIndexes[level] = findChildHoldingPosition(internal, positionUnderPage);
+                pageNumber = getChildPage(internal, pathChildIndexes[level]);
+            }
+            loadLeaf(pageNumber);
+            for (int i = 0; i < positionUnderPage[0]; i++) {
+                personOffset = skipPerson(leafBytes, personOffset);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextPosition < personCount;
+        }
+
+        @Override
+        public String[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (personOffset == leafBytes.getShort(LEAF_END_OFFSET)) {
+                loadNextLeaf();
+            }
+            final String[] person = decodePerson(leafBytes, personOffset);
+            personOffset = skipPerson(leafBytes, personOffset);
+            nextPosition++;
+            return person;
+        }
+
+        @Override
+        public int nextIndex() {
+            return nextPosition;
+        }
+
+        @Override
+        public int previousIndex() {
+            return nextPosition - 1;
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return nextPosition > 0;
+        }
+
+        @Override
+        public String[] previous() {
+            throw new UnsupportedOperationException("Iterators of a paged store only move forward");
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void set(String[] person) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void add(String[] person) {
+            throw new UnsupportedOperationException();
+        }
+
+        private void loadNextLeaf() {
+            evictPagesIfNeeded();
+            int level = height - 2;
+            while (pathChildIndexes[level] + 1 == getChildCount(getPage(pathPages[level]))) {
+                level--; // the root always has a next child, as there are persons left
+            }
+            pathChildIndexes[level]++;
+            int pageNumber = getChildPage(getPage(pathPages[level]), pathChildIndexes[level]);
+            for (level++; level < height - 1; level++) {
+                pathPages[level] = pageNumber;
+                pathChildIndexes[level] = 0;
+                pageNumber = getChildPage(getPage(pageNumber), 0);
+            }
+            loadLeaf(pageNumber);
+        }
+
+        private void loadLeaf(int pageNumber) {
+            final Page cached = cachedPages.get(pageNumber);
+            if (cached != null) {
+                cacheHitCount++;
+                leafBytes = cached.bytes;
+            } else {
+                pagesReadByScansCount++;
+                leafBytes = readPageFromFile(pageNumber, leafBuffer);
+            }
+            personOffset = LEAF_HEADER_SIZE;
+        }
+    }
+
+    /**
+     * Saves the changes made since the latest save, as a whole. The dirty pages are written first; none of
+     * them is used by the saved store. Then the header is written, through the journal, which switches the
+     * file to the changed store. The pages that only the old store used are free from then on, and the file
+     * is shortened if the pages at its end are free.
+     *
+     * @param isForced true if the data is to be forced to the disk
+     * @return false if nothing was changed since the latest save
+     */
+    boolean save(boolean isForced) {
+        if (newPages.isEmpty() && pagesFreedBySave.isEmpty()) {
+            return false;
+        }
+        final Page[] dirtyPages = cachedPages.values().stream().filter(page -> page.isDirty).toArray(Page[]::new);
+        Arrays.sort(dirtyPages, (a, b) -> Integer.compare(a.number, b.number));
+        for (Page page : dirtyPages) {
+            writePageToFile(page);
+        }
+        while (pageCount > 1 && (freePages.get(pageCount - 1) || pagesFreedBySave.get(pageCount - 1))) {
+            pageCount--;
+        }
+        try {
+            if (isForced) {
+                channel.force(false);
+            }
+            final Page header = makeHeaderPage();
+            writeJournal(header, isForced);
+            writePageToFile(header);
+            if (isForced) {
+                channel.force(false);
+            }
+            journalChannel.truncate(0);
+            if (channel.size() > (long) pageCount * PAGE_SIZE) {
+                channel.truncate((long) pageCount * PAGE_SIZE);
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        freePages.or(pagesFreedBySave);
+        clearPagesFrom(freePages, pageCount);
+        pagesFreedBySave.clear();
+        newPages.clear();
+        savedPageCount = pageCount;
+        savedRootPage = rootPage;
+        savedHeight = height;
+        savedPersonCount = personCount;
+        evictPagesIfNeeded();
+        return true;
+    }
+
+    /**
+     * Drops the changes made since the latest save, going back to the saved store.
+     */
+    void rollback() {
+        cachedPages.keySet().removeIf(newPages::get);
+        freePages.or(newPages);
+        newPages.clear();
+        pagesFreedBySave.clear();
+        pageCount = savedPageCount;
+        rootPage = savedRootPage;
+        height = savedHeight;
+        personCount = savedPersonCount;
+        clearPagesFrom(freePages, pageCount);
+        modCount++;
+    }
+
+    private static void clearPagesFrom(BitSet pages, int fromPageNumber) {
+        if (pages.length() > fromPageNumber) {
+            pages.clear(fromPageNumber, pages.length());
+        }
+    }
+
+    private Page makeHeaderPage() {
+        final ByteBuffer header = ByteBuffer.allocate(PAGE_SIZE);
+        header.putInt(0, MAGIC);
+        header.putInt(Integer.BYTES, FORMAT_VERSION);
+        header.putInt(2 * Integer.BYTES, PAGE_SIZE);
+        header.putInt(HEADER_PAGE_COUNT_OFFSET, pageCount);
+        header.putInt(HEADER_ROOT_PAGE_OFFSET, rootPage);
+        header.putInt(HEADER_HEIGHT_OFFSET, height);
+        header.putInt(HEADER_PERSON_COUNT_OFFSET, personCount);
+        return new Page(0, header);
+    }
+
+    /**
+     * Writes pages to the journal, ending with the checksum that marks the journal as complete.
+     */
+    private void writeJournal(Page page, boolean isForced) throws IOException {
+        final Page[] pages = { page };
+        getJournalChannel().truncate(0);
+        journalChannel.position(0);
+        final CheckedOutputStream checkedOutput = new CheckedOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(journalChannel), PAGE_SIZE), new CRC32());
+        final DataOutputStream journal = new DataOutputStream(checkedOutput);
+        journal.writeInt(JOURNAL_MAGIC);
+        journal.writeInt(pages.length);
+        for (Page journaledPage : pages) {
+            journal.writeInt(journaledPage.number);
+            journal.write(journaledPage.bytes.array());
+        }
+        journal.writeLong(checkedOutput.getChecksum().getValue());
+        journal.flush(); // not closed, as that would close the channel
+        if (isForced) {
+            journalChannel.force(false);
+        }
+    }
+
+    /*
+     * NOTE : =============================================================
+     * The methods below return the statistics shown by the stats command.
+     * ====================================================================
+     */
+
+    int getPageCount() {
+        return pageCount;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    int getCachedPageCount() {
+        return cachedPages.size();
+    }
+
+    int getCacheCapacity() {
+        return cacheCapacity;
+    }
+
+    long getCacheHitCount() {
+        return cacheHitCount;
+    }
+
+    long getCacheMissCount() {
+        return cacheMissCount;
+    }
+
+    long getPagesReadByScansCount() {
+        return pagesReadByScansCount;
+    }
+}
@@ -0,0 +1,311 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates realistic address books and command traces, and replays traces against the address book
+ * in-process, reporting throughput and latency percentiles for each command.
+ *
+ * Run from the test directory, after compiling the address book into ../bin:
+ *    javac -d ../bin perf/AddressBookWorkload.java
+ *    java -cp ../bin AddressBookWorkload book  BOOK_FILE PERSON_COUNT [options]
+ *    java -cp ../bin AddressBookWorkload trace TRACE_FILE COMMAND_COUNT [options]
+ *    java -cp ../bin AddressBookWorkload replay BOOK_FILE TRACE_FILE
+ *
+ * Options for generating:
+ *    --seed N             seed of the random generator (default 1), so the same options give the same files
+ *    --name-skew S        Zipf exponent of how often first and last names occur (default 1.0, 0 for uniform)
+ *    --domains N          number of email domains shared by all persons (default 50)
+ *    --domain-skew S      Zipf exponent of how often each email domain occurs (default 1.2)
+ *    --persons N          size of the book a trace is generated for (default 10000)
+ *    --mix add=A,find=F,list=L,delete=D   relative weights of the commands in a trace (default 10,60,20,10)
+ *
+ * Replaying works on a copy of the book, so the book can be replayed again. The address book's system
+ * properties apply, e.g. java -Daddressbook.fsync=never -cp ../bin AddressBookWorkload replay ...
+ * The output of the address book itself is discarded.
+ */
+public class AddressBookWorkload {
+
+    private static final String[] FIRST_NAMES = {
+        "James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael", "Linda", "William", "Elizabeth",
+        "David", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Charles", "Karen",
+        "Wei", "Mei", "Jun", "Hui", "Ravi", "Priya", "Arjun", "Anjali", "Ahmad", "Nur", "Siti", "Muhammad",
+        "Hiroshi", "Yuki", "Kenji", "Sakura", "Min", "Ji", "Seo", "Hyun", "Luis", "Maria", "Jose", "Ana",
+        "Carlos", "Sofia", "Olga", "Ivan", "Anna", "Dmitri"
+    };
+
+    private static final String[] LAST_NAMES = {
+        "Tan", "Lim", "Lee", "Ng", "Ong", "Wong", "Goh", "Chua", "Chan", "Koh", "Teo", "Ang", "Yeo", "Tay",
+        "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez", "Martinez",
+        "Kumar", "Singh", "Sharma", "Patel", "Rahman", "Abdullah", "Ismail", "Hassan", "Sato", "Suzuki",
+        "Takahashi", "Tanaka", "Kim", "Park", "Choi", "Jung", "Nguyen", "Tran", "Pham", "Silva", "Santos",
+        "Ivanov", "Petrov", "Muller", "Schmidt", "Rossi"
+    };
+
+    private static final String[] COMMON_DOMAINS = {"gmail.com", "yahoo.com", "outlook.com", "hotmail.com"};
+
+    private static final String[] COMMANDS = {"add", "find", "list", "delete"};
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    public static void main(String[] args) throws Throwable {
+        if (args.length < 3) {
+            System.out.println("Usage: AddressBookWorkload book|trace|replay FILE COUNT|TRACE_FILE [options]");
+            System.exit(2);
+        }
+        final Map<String, String> options = parseOptions(Arrays.copyOfRange(args, 3, args.length));
+        switch (args[0]) {
+        case "book":
+            generateBook(Paths.get(args[1]), Integer.parseInt(args[2]), new PersonGenerator(options));
+            break;
+        case "trace":
+            generateTrace(Paths.get(args[1]), Integer.parseInt(args[2]), new PersonGenerator(options), options);
+            break;
+        case "replay":
+            replay(Paths.get(args[1]), Paths.get(args[2]));
+            break;
+        default:
+            System.out.println("Unknown mode: " + args[0]);
+            System.exit(2);
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        final Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i], args[i + 1]);
+        }
+        return options;
+    }
+
+    /**
+     * Draws persons (and parts of them) from the configured distributions.
+     */
+    private static final class PersonGenerator {
+        final Random random;
+        final ZipfDistribution firstNames;
+        final ZipfDistribution lastNames;
+        final ZipfDistribution domains;
+        final String[] domainNames;
+
+        PersonGenerator(Map<String, String> options) {
+            random = new Random(Long.parseLong(options.getOrDefault("--seed", "1")));
+            final double nameSkew = Double.parseDouble(options.getOrDefault("--name-skew", "1.0"));
+            firstNames = new ZipfDistribution(FIRST_NAMES.length, nameSkew);
+            lastNames = new ZipfDistribution(LAST_NAMES.length, nameSkew);
+            domainNames = new String[Integer.parseInt(options.getOrDefault("--domains", "50"))];
+            for (int i = 0; i < domainNames.length; i++) {
+                domainNames[i] = i < COMMON_DOMAINS.length ? COMMON_DOMAINS[i] : "company" + i + ".com";
+            }
+            domains = new ZipfDistribution(domainNames.length,
+                    Double.parseDouble(options.getOrDefault("--domain-skew", "1.2")));
+        }
+
+        String firstName() {
+            return FIRST_NAMES[firstNames.sample(random)];
+        }
+
+        String lastName() {
+            return LAST_NAMES[lastNames.sample(random)];
+        }
+
+        /** Returns a person in the storage file format (and the add command format): NAME p/PHONE e/EMAIL */
+        String person() {
+            final String firstName = firstName();
+            final String lastName = lastName();
+            final String phone = "689".charAt(random.nextInt(3)) + String.format("%07d", random.nextInt(10_000_000));
+            final String email = firstName.toLowerCase() + '.' + lastName.toLowerCase() + random.nextInt(1000)
+                    + '@' + domainNames[domains.sample(random)];
+            return firstName + ' ' + lastName + " p/" + phone + " e/" + email;
+        }
+    }
+
+    /**
+     * Ranks 0 to n - 1, where rank k is drawn with a probability proportional to 1 / (k + 1)^exponent.
+     */
+    private static final class ZipfDistribution {
+        final double[] cumulativeWeights;
+
+        ZipfDistribution(int n, double exponent) {
+            cumulativeWeights = new double[n];
+            double total = 0;
+            for (int k = 0; k < n; k++) {
+                total += 1 / Math.pow(k + 1, exponent);
+                cumulativeWeights[k] = total;
+            }
+        }
+
+        int sample(Random random) {
+            final double target = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+            final int found = Arrays.binarySearch(cumulativeWeights, target);
+            return Math.min(found >= 0 ? found : -found - 1, cumulativeWeights.length - 1);
+        }
+    }
+
+    private static void generateBook(Path file, int personCount, PersonGenerator generator) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < personCount; i++) {
+                out.write(generator.person());
+                out.newLine();
+            }
+        }
+        System.out.printf("Wrote %d persons to %s%n", personCount, file);
+    }
+
+    /**
+     * Writes a trace of commands drawn in the given mix. Deletes pick an index that is valid in the latest
+     * listing: any person after a full listing, or the first person found after a find.
+     */
+    private static void generateTrace(Path file, int commandCount, PersonGenerator generator,
+                                      Map<String, String> options) throws IOException {
+        final double[] cumulativeMix = parseMix(options.getOrDefault("--mix", "add=10,find=60,list=20,delete=10"));
+        int bookSize = Integer.parseInt(options.getOrDefault("--persons", "10000"));
+        boolean isLatestListingFull = true;
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < commandCount; i++) {
+                final double target = generator.random.nextDouble() * cumulativeMix[cumulativeMix.length - 1];
+                int command = 0;
+                while (cumulativeMix[command] <= target) {
+                    command++;
+                }
+                switch (COMMANDS[command]) {
+                case "add":
+                    out.write("add " + generator.person());
+                    bookSize++;
+                    break;
+                case "find":
+                    out.write(generator.random.nextBoolean() ? "find " + generator.firstName()
+                                                             : "find " + generator.firstName() + ' '
+                                                                       + generator.lastName());
+                    isLatestListingFull = false;
+                    break;
+                case "list":
+                    out.write("list --page " + (1 + generator.random.nextInt(Math.max(1, bookSize / 20))));
+                    isLatestListingFull = true;
+                    break;
+                default:
+                    out.write("delete " + (isLatestListingFull ? 1 + generator.random.nextInt(Math.max(1, bookSize))
+                                                               : 1));
+                    bookSize = Math.max(0, bookSize - 1);
+                    break;
+                }
+                out.newLine();
+            }
+        }
+        System.out.printf("Wrote %d commands to %s%n", commandCount, file);
+    }
+
+    private static double[] parseMix(String mix) {
+        final double[] cumulative = new double[COMMANDS.length];
+        for (String part : mix.split(",")) {
+            final String[] commandAndWeight = part.split("=");
+            final int command = Arrays.asList(COMMANDS).indexOf(commandAndWeight[0].trim());
+            if (command < 0) {
+                throw new IllegalArgumentException("Unknown command in mix: " + commandAndWeight[0]);
+            }
+            cumulative[command] = Double.parseDouble(commandAndWeight[1]);
+        }
+        for (int i = 1; i < cumulative.length; i++) {
+            cumulative[i] += cumulative[i - 1];
+        }
+        return cumulative;
+    }
+
+    /**
+     * Loads a copy of the book into the address book in this JVM, runs every command in the trace through
+     * the same method that the address book's main loop calls, and reports the time each command took.
+     */
+    private static void replay(Path book, Path trace) throws Throwable {
+        final PrintStream report = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // before the address book class loads
+        final Path replayedBook = Files.createTempFile("addressbook-replay", ".txt");
+        Files.copy(book, replayedBook, StandardCopyOption.REPLACE_EXISTING);
+        final List<String> commands = Files.readAllLines(trace, StandardCharsets.UTF_8);
+        try {
+            final Class<?> addressBook = Class.forName("seedu.addressbook.AddressBook");
+            final MethodHandle processProgramArgs =
+                    findPrivateMethod(addressBook, "processProgramArgs", void.class, String[].class);
+            final MethodHandle loadDataFromStorage = findPrivateMethod(addressBook, "loadDataFromStorage", void.class);
+            final MethodHandle executeCommand =
+                    findPrivateMethod(addressBook, "executeCommand", String.class, String.class);
+
+            long start = System.nanoTime();
+            processProgramArgs.invokeExact(new String[] {replayedBook.toString()});
+            loadDataFromStorage.invokeExact();
+            final long loadNanos = System.nanoTime() - start;
+
+            final Map<String, long[]> latencies = new LinkedHashMap<>();
+            final Map<String, Integer> counts = new HashMap<>();
+            for (String command : COMMANDS) {
+                latencies.put(command, new long[commands.size()]);
+                counts.put(command, 0);
+            }
+            start = System.nanoTime();
+            for (String command : commands) {
+                final String commandWord = command.split(" ", 2)[0];
+                final long commandStart = System.nanoTime();
+                final String ignoredFeedback = (String) executeCommand.invokeExact(command);
+                final long nanos = System.nanoTime() - commandStart;
+                final long[] latenciesOfCommand =
+                        latencies.computeIfAbsent(commandWord, word -> new long[commands.size()]);
+                final int count = counts.getOrDefault(commandWord, 0);
+                latenciesOfCommand[count] = nanos;
+                counts.put(commandWord, count + 1);
+            }
+            final long replayNanos = System.nanoTime() - start;
+
+            report.printf("Loaded %s in %.1f ms%n", book, loadNanos / 1e6);
+            report.printf("Replayed %d commands in %.1f ms (%.0f commands per second)%n",
+                    commands.size(), replayNanos / 1e6, commands.size() / (replayNanos / 1e9));
+            report.printf("%-8s %8s %12s %10s %10s %10s %10s %10s%n",
+                    "command", "count", "per second", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+            for (Map.Entry<String, long[]> entry : latencies.entrySet()) {
+                final int count = counts.get(entry.getKey());
+                if (count == 0) {
+                    continue;
+                }
+                final long[] sorted = Arrays.copyOf(entry.getValue(), count);
+                Arrays.sort(sorted);
+                final long totalNanos = Arrays.stream(sorted).sum();
+                report.printf("%-8s %8d %12.0f", entry.getKey(), count, count / (totalNanos / 1e9));
+                for (double percentile : PERCENTILES) {
+                    report.printf(" %10.3f", percentileOf(sorted, percentile) / 1e6);
+                }
+                report.printf(" %10.3f%n", sorted[count - 1] / 1e6);
+            }
+        } finally {
+            for (String sidecarSuffix : new String[] {"", ".lock", ".index", ".tmp"}) {
+                Files.deleteIfExists(Paths.get(replayedBook + sidecarSuffix));
+            }
+        }
+    }
+
+    private static long percentileOf(long[] sorted, double percentile) {
+        final int rank = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(rank, sorted.length - 1))];
+    }
+
+    private static MethodHandle findPrivateMethod(Class<?> owner, String name, Class<?> returnType,
+                                                  Class<?>... parameterTypes) throws ReflectiveOperationException {
+        final Method method = owner.getDeclaredMethod(name, parameterTypes);
+        method.setAccessible(true);
+        final MethodHandle handle = MethodHandles.lookup().unreflect(method);
+        return handle.asType(MethodType.methodType(returnType, parameterTypes));
+    }
+}
@@ -0,0 +1,118 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+
+/**
+ * Measures how many bytes are allocated to read the command word and arguments out of a line of user input,
+ * in steady state (after the JIT compiler has warmed up), and compares it with splitting the line with
+ * a regular expression.
+ *
+ * Run from the test directory, after compiling the address book into ../bin:
+ *    javac -d ../bin perf/CommandParsingAllocationBenchmark.java
+ *    java -cp ../bin CommandParsingAllocationBenchmark
+ *
+ * Exits with status 1 if finding the command word (and skipping blank and comment lines) allocates
+ * more than {@link #MAX_BYTES_PER_LINE} bytes per line on average.
+ */
+public class CommandParsingAllocationBenchmark {
+
+    private static final String[] INPUT_LINES = {
+        "list", "  next  ", "stats", "undo", "delete 3", "find Betsy Charlie", "list --page 2 --size 50",
+        "# a comment line", "   ", "add John Doe p/98765432 e/johnd@gmail.com"
+    };
+
+    private static final int WARMUP_ROUNDS = 200_000;
+    private static final int MEASURED_ROUNDS = 1_000_000;
+    private static final double MAX_BYTES_PER_LINE = 1.0;
+
+    private static MethodHandle extractCommandWord;
+    private static MethodHandle extractCommandArgs;
+    private static MethodHandle isBlankOrCommentLine;
+
+    /** Keeps results alive, so that the work measured is not optimised away. */
+    private static int sink;
+
+    public static void main(String[] args) throws Throwable {
+        final Class<?> addressBook = Class.forName("seedu.addressbook.AddressBook");
+        extractCommandWord = findPrivateMethod(addressBook, "extractCommandWord", String.class, String.class);
+        extractCommandArgs = findPrivateMethod(addressBook, "extractCommandArgs", String.class, String.class);
+        isBlankOrCommentLine = findPrivateMethod(addressBook, "isBlankOrCommentLine", boolean.class, String.class);
+
+        final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+
+        runCommandWordLexer(WARMUP_ROUNDS);
+        runArgsLexer(WARMUP_ROUNDS);
+        runRegexSplit(WARMUP_ROUNDS);
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        runCommandWordLexer(MEASURED_ROUNDS);
+        final double wordBytesPerLine = perLine(threads.getThreadAllocatedBytes(threadId) - before);
+
+        before = threads.getThreadAllocatedBytes(threadId);
+        runArgsLexer(MEASURED_ROUNDS);
+        final double argsBytesPerLine = perLine(threads.getThreadAllocatedBytes(threadId) - before);
+
+        before = threads.getThreadAllocatedBytes(threadId);
+        runRegexSplit(MEASURED_ROUNDS);
+        final double regexBytesPerLine = perLine(threads.getThreadAllocatedBytes(threadId) - before);
+
+        System.out.printf("Bytes allocated per input line (%d lines):%n", MEASURED_ROUNDS * INPUT_LINES.length);
+        System.out.printf("  comment check + command word : %10.2f%n", wordBytesPerLine);
+        System.out.printf("  command arguments            : %10.2f%n", argsBytesPerLine);
+        System.out.printf("  trim() + split(\"\\\\s+\", 2)    : %10.2f%n", regexBytesPerLine);
+        if (sink == 0) {
+            System.out.println("No input lines were read");
+        }
+        if (wordBytesPerLine > MAX_BYTES_PER_LINE) {
+            System.out.println("FAILED: reading the command word allocates memory");
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+    }
+
+    private static MethodHandle findPrivateMethod(Class<?> owner, String name, Class<?> returnType,
+                                                  Class<?>... parameterTypes) throws ReflectiveOperationException {
+        final Method method = owner.getDeclaredMethod(name, parameterTypes);
+        method.setAccessible(true);
+        final MethodHandle handle = MethodHandles.lookup().unreflect(method);
+        return handle.asType(MethodType.methodType(returnType, parameterTypes));
+    }
+
+    private static void runCommandWordLexer(int rounds) throws Throwable {
+        for (int round = 0; round < rounds; round++) {
+            for (String line : INPUT_LINES) {
+                if (!(boolean) isBlankOrCommentLine.invokeExact(line)) {
+                    sink += ((String) extractCommandWord.invokeExact(line)).length();
+                }
+            }
+        }
+    }
+
+    private static void runArgsLexer(int rounds) throws Throwable {
+        for (int round = 0; round < rounds; round++) {
+            for (String line : INPUT_LINES) {
+                if (!(boolean) isBlankOrCommentLine.invokeExact(line)) {
+                    sink += ((String) extractCommandArgs.invokeExact(line)).length();
+                }
+            }
+        }
+    }
+
+    private static void runRegexSplit(int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            for (String line : INPUT_LINES) {
+                if (!line.trim().isEmpty() && line.trim().charAt(0) != '#') {
+                    sink += line.trim().split("\\s+", 2)[0].length();
+                }
+            }
+        }
+    }
+
+    private static double perLine(long bytes) {
+        return (double) bytes / ((long) MEASURED_ROUNDS * INPUT_LINES.length);
+    }
+}
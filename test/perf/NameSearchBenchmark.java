@@ -0,0 +1,166 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures how long {@code find --contains} takes to scan the packed names of 1,000,000 persons, and compares it
+ * with a loop calling {@link String#contains} on every name. Also checks that both find the same persons.
+ *
+ * Run from the test directory, after compiling the address book into ../bin:
+ *    javac -d ../bin perf/NameSearchBenchmark.java
+ *    java -Xmx1g -cp ../bin NameSearchBenchmark [PERSON_COUNT]
+ * To measure the Vector API scan, compile ../src-vector/seedu/addressbook/VectorNameScanner.java as well (see
+ * its doc comment) and add {@code --add-modules jdk.incubator.vector} to the java command.
+ *
+ * Exits with status 1 if the two searches find different persons for any text.
+ */
+public class NameSearchBenchmark {
+
+    private static final String[] FIRST_NAMES = {
+        "John", "Betsy", "Charlie", "Dickson", "Esther", "Maria", "Chlo\u00eb", "Zo\u00eb", "Ahmad", "Siti", "Wei Ling",
+        "Anna", "J\u00fcrgen", "Mohammed", "Priya", "Ravi", "Nguy\u1ec5n", "Li", "Tan", "Olivia"
+    };
+    private static final String[] SYLLABLES = {
+        "son", "ber", "ka", "ri", "lo", "man", "tan", "chen", "wick", "ley", "ton", "ham", "ez", "\u00f8", "\u00e9"
+    };
+    /** Texts searched for: common and rare, short and long, ASCII and not, across a space, and absent. */
+    private static final String[] SEARCHED_TEXTS = {
+        "son", "a", "ickso", "wickley", "n B", "\u00eb", "J\u00fcrgen", "Zo\u00eb Tanson", "qqq", "Olivia Hamsonbertan"
+    };
+
+    private static final int DEFAULT_PERSON_COUNT = 1_000_000;
+    private static final int WARMUP_ROUNDS = 10;
+    private static final int MEASURED_ROUNDS = 15;
+
+    private static MethodHandle findPackedNames;
+
+    /** Keeps results alive, so that the work measured is not optimised away. */
+    private static int sink;
+
+    public static void main(String[] args) throws Throwable {
+        final int personCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PERSON_COUNT;
+        final Class<?> addressBook = Class.forName("seedu.addressbook.AddressBook");
+        final Method method = addressBook.getDeclaredMethod("getPositionsOfPersonsWithNameContainingText",
+                String.class);
+        method.setAccessible(true);
+        findPackedNames = MethodHandles.lookup().unreflect(method)
+                .asType(MethodType.methodType(int[].class, String.class));
+
+        final Field allPersonsField = addressBook.getDeclaredField("ALL_PERSONS");
+        allPersonsField.setAccessible(true);
+        @SuppressWarnings("unchecked")
+        final ArrayList<String[]> allPersons = (ArrayList<String[]>) allPersonsField.get(null);
+        final String[] names = generateNames(personCount);
+        for (int i = 0; i < names.length; i++) {
+            allPersons.add(new String[] { names[i], String.valueOf(60_000_000 + i), "person" + i + "@example.com" });
+        }
+
+        final Field vectorScannerField = addressBook.getDeclaredField("VECTOR_NAME_SCANNER_CONSTRUCTOR");
+        vectorScannerField.setAccessible(true);
+        System.out.println("Scanning with " + (vectorScannerField.get(null) != null
+                ? "the Vector API" : "8 bytes at a time within a long"));
+
+        long start = System.nanoTime();
+        final int[] firstResult = (int[]) findPackedNames.invokeExact("son"); // packs the names
+        System.out.printf("Packed %d names in %.1f ms%n", personCount, (System.nanoTime() - start) / 1e6);
+        sink += firstResult.length;
+
+        // warm up on all texts first, so that each is measured with code compiled for all of them
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            for (String text : SEARCHED_TEXTS) {
+                sink += ((int[]) findPackedNames.invokeExact(text)).length;
+                sink += findWithStringContains(names, text).length;
+            }
+        }
+
+        boolean isSame = true;
+        System.out.printf("%-22s %10s %18s %18s %8s%n",
+                "text", "matches", "packed scan (ms)", "contains (ms)", "speedup");
+        for (String text : SEARCHED_TEXTS) {
+            final int[] packedResult = (int[]) findPackedNames.invokeExact(text);
+            final int[] naiveResult = findWithStringContains(names, text);
+            if (!Arrays.equals(packedResult, naiveResult)) {
+                System.out.println("Different persons found for: " + text);
+                isSame = false;
+            }
+            final double packedMillis = timePackedScan(text);
+            final double naiveMillis = timeStringContains(names, text);
+            System.out.printf("%-22s %10d %18.2f %18.2f %7.1fx%n",
+                    '"' + text + '"', packedResult.length, packedMillis, naiveMillis, naiveMillis / packedMillis);
+        }
+        if (sink == 0) {
+            System.out.println("No persons were found");
+        }
+        if (!isSame) {
+            System.out.println("FAILED: the packed scan and String.contains found different persons");
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+    }
+
+    /**
+     * Returns names of one or two first names followed by a last name made of syllables, with a fixed seed.
+     */
+    private static String[] generateNames(int count) {
+        final Random random = new Random(42);
+        final String[] names = new String[count];
+        final StringBuilder name = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            name.setLength(0);
+            name.append(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]).append(' ');
+            if (random.nextInt(4) == 0) {
+                name.append(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]).append(' ');
+            }
+            name.append(Character.toUpperCase(SYLLABLES[random.nextInt(SYLLABLES.length)].charAt(0)));
+            name.append(SYLLABLES[random.nextInt(SYLLABLES.length)].substring(1));
+            for (int syllables = 1 + random.nextInt(3); syllables > 0; syllables--) {
+                name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            names[i] = name.toString();
+        }
+        return names;
+    }
+
+    private static int[] findWithStringContains(String[] names, String text) {
+        int[] positions = new int[16];
+        int count = 0;
+        for (int position = 0; position < names.length; position++) {
+            if (names[position].contains(text)) {
+                if (count == positions.length) {
+                    positions = Arrays.copyOf(positions, count * 2);
+                }
+                positions[count++] = position;
+            }
+        }
+        return Arrays.copyOf(positions, count);
+    }
+
+    /** Returns the median time of the measured rounds, in milliseconds. */
+    private static double timePackedScan(String text) throws Throwable {
+        final long[] nanos = new long[MEASURED_ROUNDS];
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            final long start = System.nanoTime();
+            sink += ((int[]) findPackedNames.invokeExact(text)).length;
+            nanos[round] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos[MEASURED_ROUNDS / 2] / 1e6;
+    }
+
+    /** Returns the median time of the measured rounds, in milliseconds. */
+    private static double timeStringContains(String[] names, String text) {
+        final long[] nanos = new long[MEASURED_ROUNDS];
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            final long start = System.nanoTime();
+            sink += findWithStringContains(names, text).length;
+            nanos[round] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos[MEASURED_ROUNDS / 2] / 1e6;
+    }
+}
@@ -0,0 +1,262 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs fixed-size workloads through the address book's main method, each in a new JVM as a user would, and
+ * compares their running time and peak memory use (resident set size) against a stored baseline.
+ * Fails if any workload is slower, or uses more memory, than the baseline allows.
+ *
+ * Run from the test directory with runperfgate.sh, or after compiling the address book into ../bin:
+ *    javac -d ../bin perf/PerformanceGate.java
+ *    java -cp ../bin PerformanceGate [--update] [--runs N] [--time-tolerance T] [--rss-tolerance R]
+ *
+ *    --update            record the measurements as the new baseline instead of comparing with it
+ *    --runs N            runs of each workload; the median is compared (default 3)
+ *    --time-tolerance T  allowed slowdown, as a fraction of the baseline time (default 0.5, i.e. 50%)
+ *    --rss-tolerance R   allowed growth of peak memory, as a fraction of the baseline (default 0.3)
+ *
+ * Needs Linux, as peak memory is read from /proc. Timings depend on the machine, so the baseline should be
+ * recorded (with --update) on the machine that runs the gate.
+ */
+public class PerformanceGate {
+
+    private static final Path BASELINE_FILE = Paths.get("perf", "baseline.txt");
+    private static final Path WORK_DIRECTORY = Paths.get("data", "perf");
+    private static final Path BOOK_FILE = WORK_DIRECTORY.resolve("book.txt");
+
+    /** Options of the JVMs that run the workloads. The fsync policy is turned off to keep the disk out of it. */
+    private static final String[] JVM_OPTIONS = {"-Xmx1g", "-Daddressbook.fsync=never"};
+
+    /** Slack added to every time limit, so that workloads of a few hundred milliseconds are not too fragile. */
+    private static final long TIME_SLACK_MILLIS = 100;
+
+    /** How often the memory use of a running workload is sampled. */
+    private static final long RSS_SAMPLE_MILLIS = 5;
+
+    private static final String[] BOOK_SIDECAR_SUFFIXES = {".lock", ".index", ".tmp"};
+
+    /**
+     * A workload: the persons in the address book at the start, and the commands entered.
+     */
+    private static final class Workload {
+        final String name;
+        final int personCount;
+        final List<String> commands;
+
+        Workload(String name, int personCount, List<String> commands) {
+            this.name = name;
+            this.personCount = personCount;
+            this.commands = commands;
+        }
+    }
+
+    private static final class Measurement {
+        final long millis;
+        final long peakRssKb;
+
+        Measurement(long millis, long peakRssKb) {
+            this.millis = millis;
+            this.peakRssKb = peakRssKb;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final List<String> options = Arrays.asList(args);
+        final boolean isUpdate = options.contains("--update");
+        final int runs = Integer.parseInt(getOption(options, "--runs", "3"));
+        final double timeTolerance = Double.parseDouble(getOption(options, "--time-tolerance", "0.5"));
+        final double rssTolerance = Double.parseDouble(getOption(options, "--rss-tolerance", "0.3"));
+
+        Files.createDirectories(WORK_DIRECTORY);
+        final Map<String, Measurement> measurements = new LinkedHashMap<>();
+        for (Workload workload : getWorkloads()) {
+            measurements.put(workload.name, measure(workload, runs));
+        }
+
+        if (isUpdate) {
+            writeBaseline(measurements);
+            System.out.println("Baseline recorded in " + BASELINE_FILE);
+            return;
+        }
+        final Map<String, Measurement> baseline = readBaseline();
+        boolean isRegressed = false;
+        System.out.printf("%-12s %10s %10s %10s %12s %12s %12s%n",
+                "workload", "ms", "limit ms", "base ms", "peak RSS KB", "limit KB", "base KB");
+        for (Map.Entry<String, Measurement> entry : measurements.entrySet()) {
+            final Measurement measured = entry.getValue();
+            final Measurement expected = baseline.get(entry.getKey());
+            if (expected == null) {
+                System.out.printf("%-12s %10d %10s %10s %12d %12s %12s  (no baseline)%n",
+                        entry.getKey(), measured.millis, "-", "-", measured.peakRssKb, "-", "-");
+                continue;
+            }
+            final long millisLimit = (long) (expected.millis * (1 + timeTolerance)) + TIME_SLACK_MILLIS;
+            final long rssLimit = (long) (expected.peakRssKb * (1 + rssTolerance));
+            final boolean isSlower = measured.millis > millisLimit;
+            final boolean isBigger = measured.peakRssKb > rssLimit;
+            isRegressed = isRegressed || isSlower || isBigger;
+            System.out.printf("%-12s %10d %10d %10d %12d %12d %12d%s%n",
+                    entry.getKey(), measured.millis, millisLimit, expected.millis,
+                    measured.peakRssKb, rssLimit, expected.peakRssKb,
+                    isSlower || isBigger ? "  REGRESSED" + (isSlower ? " (time)" : "") + (isBigger ? " (memory)" : "")
+                                         : "");
+        }
+        System.out.println(isRegressed ? "Performance gate: FAILED" : "Performance gate: PASSED");
+        System.exit(isRegressed ? 1 : 0);
+    }
+
+    private static String getOption(List<String> options, String name, String defaultValue) {
+        final int position = options.indexOf(name);
+        return position >= 0 && position + 1 < options.size() ? options.get(position + 1) : defaultValue;
+    }
+
+    private static List<Workload> getWorkloads() {
+        final List<String> exitOnly = Arrays.asList("exit");
+        final List<String> adds = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            adds.add("add Added " + word(i) + " p/" + (80_000_000 + i) + " e/added" + i + "@example.com");
+        }
+        adds.add("exit");
+        final List<String> finds = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            finds.add("find " + word(i * 7 % 1_000)); // a different person each time, so the cache rarely helps
+        }
+        finds.add("exit");
+        return Arrays.asList(
+                new Workload("cold-start", 0, exitOnly),
+                new Workload("load-1m", 1_000_000, exitOnly),
+                new Workload("add-10k", 0, adds),
+                new Workload("find-10k", 1_000, finds));
+    }
+
+    /**
+     * Returns a word made of letters only (so it can be part of a name) that is different for every number.
+     */
+    private static String word(int number) {
+        final StringBuilder word = new StringBuilder("W");
+        int remaining = number;
+        do {
+            word.append((char) ('a' + remaining % 26));
+            remaining /= 26;
+        } while (remaining > 0);
+        return word.toString();
+    }
+
+    /**
+     * Runs the workload the given number of times, and returns the median time and the median peak memory use.
+     */
+    private static Measurement measure(Workload workload, int runs) throws IOException, InterruptedException {
+        final Path sourceBook = WORK_DIRECTORY.resolve("persons-" + workload.personCount + ".txt");
+        if (!Files.exists(sourceBook)) {
+            writeBook(sourceBook, workload.personCount);
+        }
+        final Path input = WORK_DIRECTORY.resolve(workload.name + ".in");
+        Files.write(input, workload.commands, StandardCharsets.UTF_8);
+
+        final long[] millis = new long[runs];
+        final long[] peakRssKb = new long[runs];
+        for (int run = 0; run < runs; run++) {
+            Files.copy(sourceBook, BOOK_FILE, StandardCopyOption.REPLACE_EXISTING);
+            for (String suffix : BOOK_SIDECAR_SUFFIXES) {
+                Files.deleteIfExists(Paths.get(BOOK_FILE + suffix));
+            }
+            final Measurement measurement = runAddressBook(input.toFile());
+            millis[run] = measurement.millis;
+            peakRssKb[run] = measurement.peakRssKb;
+        }
+        Arrays.sort(millis);
+        Arrays.sort(peakRssKb);
+        return new Measurement(millis[runs / 2], peakRssKb[runs / 2]);
+    }
+
+    private static void writeBook(Path file, int personCount) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < personCount; i++) {
+                out.write("Contact " + word(i) + " p/" + (60_000_000 + i) + " e/contact" + i + "@example.com");
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * Runs the address book on the workload book in a new JVM, entering the commands in the input file, and
+     * samples its peak resident set size from /proc until it exits.
+     */
+    private static Measurement runAddressBook(File input) throws IOException, InterruptedException {
+        final List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(Arrays.asList(JVM_OPTIONS));
+        command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), "seedu.addressbook.AddressBook",
+                BOOK_FILE.toString()));
+        final long start = System.nanoTime();
+        final Process process = new ProcessBuilder(command)
+                .redirectInput(input)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        final Path status = Paths.get("/proc", String.valueOf(process.pid()), "status");
+        long peakRssKb = 0;
+        while (process.isAlive()) {
+            peakRssKb = Math.max(peakRssKb, readPeakRssKb(status));
+            Thread.sleep(RSS_SAMPLE_MILLIS);
+        }
+        final long millis = (System.nanoTime() - start) / 1_000_000;
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("The address book exited with status " + process.exitValue());
+        }
+        return new Measurement(millis, peakRssKb);
+    }
+
+    /**
+     * Returns the peak resident set size (VmHWM) of a running process in KB, or 0 if it has just exited.
+     */
+    private static long readPeakRssKb(Path status) {
+        try {
+            for (String line : Files.readAllLines(status, StandardCharsets.UTF_8)) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("\\D", ""));
+                }
+            }
+        } catch (IOException ioe) {
+            // the process has exited
+        }
+        return 0;
+    }
+
+    private static Map<String, Measurement> readBaseline() throws IOException {
+        final Map<String, Measurement> baseline = new LinkedHashMap<>();
+        if (!Files.exists(BASELINE_FILE)) {
+            return baseline;
+        }
+        for (String line : Files.readAllLines(BASELINE_FILE, StandardCharsets.UTF_8)) {
+            if (line.trim().isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            final String[] fields = line.trim().split("\\s+");
+            baseline.put(fields[0], new Measurement(Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+        }
+        return baseline;
+    }
+
+    private static void writeBaseline(Map<String, Measurement> measurements) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        lines.add("# Performance baseline checked by runperfgate.sh; record again with: runperfgate.sh --update");
+        lines.add("# workload   median_ms   median_peak_rss_kb");
+        for (Map.Entry<String, Measurement> entry : measurements.entrySet()) {
+            lines.add(String.format("%-12s %9d %12d",
+                    entry.getKey(), entry.getValue().millis, entry.getValue().peakRssKb));
+        }
+        Files.write(BASELINE_FILE, lines, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,17 @@
+#!/usr/bin/env bash
+
+# change to script directory
+cd "${0%/*}"
+
+# create ../bin directory if not exists
+if [ ! -d "../bin" ]
+then
+    mkdir ../bin
+fi
+
+# compile the code and the performance gate into the bin folder
+javac ../src/seedu/addressbook/*.java -d ../bin
+javac perf/PerformanceGate.java -d ../bin
+
+# run the workloads and compare them with perf/baseline.txt (pass --update to record a new baseline)
+java -classpath ../bin PerformanceGate "$@"
@@ -4,7 +4,7 @@ REM create bin directory if it doesn't exist
 if not exist ..\bin mkdir ..\bin
 
 REM compile the code into the bin folder
-javac  ..\src\seedu\addressbook\Addressbook.java -d ..\bin
+javac  ..\src\seedu\addressbook\*.java -d ..\bin
 
 REM (invalid) no parent directory, invalid filename with no extension
 java -classpath ..\bin seedu.addressbook.AddressBook " " < NUL > actual.txt
@@ -20,6 +20,20 @@ copy /y NUL data\valid.filename
 java -classpath ..\bin seedu.addressbook.AddressBook "data/valid.filename" < exitinput.txt >> actual.txt
 REM run the program, feed commands from input.txt file and redirect the output to the actual.txt
 java -classpath ..\bin seedu.addressbook.AddressBook < input.txt >> actual.txt
+REM run the program with the paged store, and again on the store it saved
+if exist data\paged.db del data\paged.db
+if exist data\paged.db.journal del data\paged.db.journal
+java -Daddressbook.store=paged -classpath ..\bin seedu.addressbook.AddressBook "data/paged.db" < pagedinput.txt >> actual.txt
+java -Daddressbook.store=paged -classpath ..\bin seedu.addressbook.AddressBook "data/paged.db" < pagedrestartinput.txt >> actual.txt
+REM (invalid) the paged store cannot use a storage file in the text format
+echo John Doe p/98765432 e/johnd@gmail.com> data\notpaged.txt
+java -Daddressbook.store=paged -classpath ..\bin seedu.addressbook.AddressBook "data/notpaged.txt" < exitinput.txt >> actual.txt
+REM compile the Vector API name scanner, and run text searches through it
+javac --add-modules jdk.incubator.vector -classpath ..\bin ..\src-vector\seedu\addressbook\VectorNameScanner.java -d ..\bin
+if exist data\vector.txt del data\vector.txt
+java --add-modules jdk.incubator.vector -classpath ..\bin seedu.addressbook.AddressBook "data/vector.txt" < vectorinput.txt >> actual.txt
+REM mask the import timings, which differ between runs
+powershell -Command "(Get-Content actual.txt) -replace 'in \d+ ms \(\d+ rows per second\)', 'in _ ms (_ rows per second)' | Set-Content actual.txt"
 
 REM compare the output to the expected output
 FC actual.txt expected.txt
\ No newline at end of file
@@ -10,7 +10,7 @@ then
 fi
 
 # compile the code into the bin folder
-javac  ../src/seedu/addressbook/AddressBook.java -d ../bin
+javac  ../src/seedu/addressbook/*.java -d ../bin
 
 # (invalid) no parent directory, invalid filename with no extension
 java -classpath ../bin seedu.addressbook.AddressBook ' ' < /dev/null > actual.txt
@@ -26,6 +26,19 @@ touch data/valid.filename
 java -classpath ../bin seedu.addressbook.AddressBook 'data/valid.filename' < exitinput.txt >> actual.txt
 # run the program, feed commands from input.txt file and redirect the output to the actual.txt
 java -classpath ../bin seedu.addressbook.AddressBook < input.txt >> actual.txt
+# run the program with the paged store, and again on the store it saved
+rm -f data/paged.db data/paged.db.journal
+java -Daddressbook.store=paged -classpath ../bin seedu.addressbook.AddressBook data/paged.db < pagedinput.txt >> actual.txt
+java -Daddressbook.store=paged -classpath ../bin seedu.addressbook.AddressBook data/paged.db < pagedrestartinput.txt >> actual.txt
+# (invalid) the paged store cannot use a storage file in the text format
+echo 'John Doe p/98765432 e/johnd@gmail.com' > data/notpaged.txt
+java -Daddressbook.store=paged -classpath ../bin seedu.addressbook.AddressBook data/notpaged.txt < exitinput.txt >> actual.txt
+# compile the Vector API name scanner, and run text searches through it
+javac --add-modules jdk.incubator.vector -classpath ../bin ../src-vector/seedu/addressbook/VectorNameScanner.java -d ../bin
+rm -f data/vector.txt
+java --add-modules jdk.incubator.vector -classpath ../bin seedu.addressbook.AddressBook data/vector.txt < vectorinput.txt >> actual.txt
+# mask the import timings, which differ between runs
+sed -i.bak -E 's/in [0-9]+ ms \([0-9]+ rows per second\)/in _ ms (_ rows per second)/' actual.txt && rm actual.txt.bak
 
 # compare the output to the expected output
 diff actual.txt expected.txt